@@ -1,24 +1,24 @@
 package per.goweii.anywindow;
 
 import android.annotation.SuppressLint;
+import android.app.Activity;
 import android.content.Context;
-import android.graphics.Path;
-import android.graphics.PathMeasure;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
-import android.util.DisplayMetrics;
-import android.util.Log;
-import android.view.GestureDetector;
+import android.support.annotation.Nullable;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
-import android.view.ViewTreeObserver;
+import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.view.animation.DecelerateInterpolator;
-import android.widget.Scroller;
+import android.widget.FrameLayout;
 
 /**
  * 描述：
@@ -26,58 +26,352 @@ import android.widget.Scroller;
  * @author Cuizhen
  * @date 2019/1/23
  */
-public class AnyWindow implements View.OnTouchListener, GestureDetector.OnGestureListener {
+public class AnyWindow implements View.OnTouchListener, DragGestureDetector.Callback {
 
     private final Context mContext;
     private final AnyWindowManager mManager;
+    private final Handler mHandler;
     private final WindowParams mParams;
-    private final GestureDetector mGestureDetector;
-    private final Scroller mScroller;
+    private final DragGestureDetector mGestureDetector;
+    private final FlingAnimator mFlingAnimator;
+    private final UpdateScheduler mUpdateScheduler;
+    private final DisplayGeometry mGeometry;
+    private final WindowMemoryPolicy mMemoryPolicy;
+    private final AnyWindowMetrics mMetrics = new AnyWindowMetrics();
+    private final Scope mScope;
+    private TouchSampleBuffer mTouchSamples = null;
     private VelocityTracker mVelocityTracker = null;
-    private final Rect mFenceRect;
-    private final Path mDragPath;
 
     private View mView;
+    @LayoutRes
+    private int mLayoutRes = 0;
+    private MessageQueue.IdleHandler mPreInflateHandler = null;
+    private long mInflateNanos = 0L;
+    private long mAttachNanos = 0L;
+    private long mAvoidedAttachCount = 0L;
+    private int mPersistId = 0;
+    private WindowPositionStore mPositionStore = null;
+    private final int[] mPersistBuffer = new int[4];
+    /**
+     * 本次显示后是否被拖动或由manager移动过，之后读取到的保存位置不再覆盖
+     */
+    private boolean mMovedSinceShow = false;
+    private volatile long mIdleReleaseMillis = 0L;
+    private volatile long mIdleSinceMillis = 0L;
+    private OnReleaseListener mOnReleaseListener = null;
+    private long mDockIdleMillis = 0L;
+    private int mDockVisibleWidth = 0;
+    private boolean mDocked = false;
+    private OnDockListener mOnDockListener = null;
+    private FrameLayout mHostView = null;
+    private int mWindowId = AnyWindowManager.NO_ID;
+    private MoveMode mMoveMode = MoveMode.WINDOW;
+    private boolean mExpanded = false;
+    private int mViewX = 0;
+    private int mViewY = 0;
+    private int mViewWidth = WindowManager.LayoutParams.WRAP_CONTENT;
+    private int mViewHeight = WindowManager.LayoutParams.WRAP_CONTENT;
+    private OnFlingListener mOnFlingListener = null;
+    private TouchRecorder mTouchRecorder = null;
+    private View.OnClickListener mOnClickListener = null;
+    private View.OnLongClickListener mOnLongClickListener = null;
 
     private State dragState = State.IDLE;
     private float dragStartX = 0F;
     private float dragStartY = 0F;
     private float dragStartEventX = 0F;
     private float dragStartEventY = 0F;
+    private float dragLastX = 0F;
+    private float dragLastY = 0F;
+
+    private final View.OnLayoutChangeListener mOnLayoutChangeListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                reportBounds();
+            }
+        }
+    };
+
+    private final Runnable mDockAction = new Runnable() {
+        @Override
+        public void run() {
+            dock();
+        }
+    };
+
+    /**
+     * manager直接移动或缩放窗口时同步记录的位置和大小，否则下次拖拽会从旧位置开始，
+     * 展开的宿主窗口也会被缩小
+     */
+    private final WindowRecord.Callback mRecordCallback = new WindowRecord.Callback() {
+        @Override
+        public void onMove(int x, int y) {
+            mMovedSinceShow = true;
+            moveTo(x, y);
+        }
+
+        @Override
+        public void onResize(int width, int height) {
+            setViewSize(width, height);
+        }
+    };
+
+    /**
+     * 屏幕旋转等导致可移动区域变化时，在悬浮窗所在线程校正位置
+     */
+    private final DisplayGeometry.OnChangeListener mOnGeometryChangeListener = new DisplayGeometry.OnChangeListener() {
+        @Override
+        public void onGeometryInvalidated(@NonNull DisplayGeometry geometry) {
+            mHandler.removeCallbacks(mGeometryCheckAction);
+            mHandler.post(mGeometryCheckAction);
+        }
+    };
+    private final Runnable mGeometryCheckAction = new Runnable() {
+        @Override
+        public void run() {
+            checkGeometry();
+        }
+    };
+    /**
+     * 当前位置所依据的可移动区域
+     */
+    private final Rect mPlacedFence = new Rect();
+    private int mGeometryVersion = 0;
+
+    private long mPredictionHorizonMillis = 0L;
+    private float mPredictionMaxOffset = 0F;
+
+    private static final int TOUCH_SAMPLE_CAPACITY = 32;
+    private static final long DIRECTION_WINDOW_MILLIS = 50L;
+    private static final long PREDICTION_WINDOW_MILLIS = 40L;
 
     private enum State {
         IDLE, DRAGGING, FLING
     }
 
+    /**
+     * 悬浮窗的作用范围
+     */
+    public enum Scope {
+        /**
+         * 添加到Activity的窗口，只在该Activity内显示
+         */
+        ACTIVITY,
+        /**
+         * 添加为系统悬浮窗，跨Activity一直显示，切换页面时不需要重新添加和inflate。
+         * 需要悬浮窗权限，且只持有ApplicationContext，view不会使用Activity的主题。
+         */
+        APPLICATION
+    }
+
+    /**
+     * 拖拽和松手动画时悬浮窗的移动方式
+     */
+    public enum MoveMode {
+        /**
+         * 每帧通过updateViewLayout移动窗口
+         */
+        WINDOW,
+        /**
+         * 手势开始时将窗口扩大到整个可移动区域，之后每帧只平移硬件层上的内容，
+         * 动画结束后窗口恢复为内容大小。整个手势只有两次窗口重新布局，
+         * 但手势期间窗口会拦截其覆盖区域内的其他触摸。
+         */
+        TRANSLATION
+    }
+
     public static AnyWindow create(Context context) {
-        return new AnyWindow(context);
+        return create(context, Scope.ACTIVITY);
+    }
+
+    public static AnyWindow create(Context context, @NonNull Scope scope) {
+        if (scope == Scope.APPLICATION) {
+            return new AnyWindow(context.getApplicationContext(), AnyWindowManager.getAttachToSystem(context),
+                    WindowParams.createSystemFloatWindow(), Scope.APPLICATION);
+        }
+        return new AnyWindow(context, AnyWindowManager.newAttachToActivity(context),
+                WindowParams.createAppFloatWindow(), Scope.ACTIVITY);
     }
 
-    private AnyWindow(Context context) {
+    /**
+     * 多个悬浮窗共用同一个manager，可通过manager进行批量操作
+     */
+    public static AnyWindow create(Context context, @NonNull AnyWindowManager manager) {
+        return new AnyWindow(context, manager, WindowParams.createAppFloatWindow(), Scope.ACTIVITY);
+    }
+
+    /**
+     * 在共用的独立线程中显示，拖拽和动画不受主线程卡顿影响
+     * show/dismiss、update和设置位置、大小、停靠的方法会自动切换线程，
+     * 其他对悬浮窗和其view的操作需通过{@link #runOnWindowThread(Runnable)}执行
+     */
+    public static AnyWindow createOnWindowThread(Context context) {
+        return create(context, WindowThread.getLooper());
+    }
+
+    /**
+     * 在指定looper所在线程显示
+     */
+    public static AnyWindow create(Context context, @NonNull Looper looper) {
+        return new AnyWindow(context, AnyWindowManager.newAttachToActivity(context, looper),
+                WindowParams.createAppFloatWindow(), Scope.ACTIVITY);
+    }
+
+    private AnyWindow(Context context, AnyWindowManager manager, WindowParams params, Scope scope) {
         mContext = context;
-        mManager = AnyWindowManager.newAttachToActivity(mContext);
-        mParams = WindowParams.createAppFloatWindow();
-        mGestureDetector = new GestureDetector(mContext, this);
-        mScroller = new Scroller(mContext, new DecelerateInterpolator());
-        DisplayMetrics dm = mContext.getResources().getDisplayMetrics();
-        mFenceRect = new Rect(0, 0, dm.widthPixels, dm.heightPixels);
-        mDragPath = new Path();
+        mManager = manager;
+        mScope = scope;
+        mHandler = new Handler(mManager.getLooper());
+        mParams = params;
+        mGestureDetector = new DragGestureDetector(mContext, this);
+        mFlingAnimator = new FlingAnimator(mManager.getLooper(), new SpringSnapEngine(), new FlingAnimator.Callback() {
+            @Override
+            public void onFlingFrame(float x, float y) {
+                // 吸附目标在屏幕边缘，回弹的部分不能移出屏幕，左右两侧保持一致
+                Rect fence = mGeometry.getFenceRect();
+                int maxX = Math.max(fence.left, fence.right - mView.getWidth());
+                setViewLocation(Math.max(fence.left, Math.min(maxX, (int) x)), (int) y);
+                mUpdateScheduler.flush();
+            }
+
+            @Override
+            public void onFlingEnd(@NonNull FlingStats stats) {
+                if (dragState == State.FLING) {
+                    dragState = State.IDLE;
+                }
+                collapse();
+                reportBounds();
+                scheduleDock();
+                if (stats.isFinished()) {
+                    savePosition();
+                }
+                mMetrics.onFlingEnd(mWindowId, stats);
+                if (mOnFlingListener != null) {
+                    mOnFlingListener.onFlingEnd(AnyWindow.this, stats);
+                }
+            }
+        });
+        mGeometry = mManager.getDisplayGeometry(mContext);
+        mUpdateScheduler = new UpdateScheduler(mManager.getLooper(), new Runnable() {
+            @Override
+            public void run() {
+                mManager.update(mWindowId);
+            }
+        });
+        if (mScope == Scope.ACTIVITY) {
+            Activity activity = AnyWindowManager.getActivity(mContext);
+            if (activity != null) {
+                WindowLifecycleBinder.bind(this, activity);
+            }
+        }
+        mMemoryPolicy = WindowMemoryPolicy.get(mContext);
+        mIdleSinceMillis = SystemClock.uptimeMillis();
+        mMemoryPolicy.onWindowHidden(this);
     }
 
+    /**
+     * 只记录布局id，在第一次show或调用{@link #getView()}时才inflate
+     * 正在显示时立即inflate并替换，位置不变
+     */
     public AnyWindow setView(@LayoutRes int layoutRes) {
-        View view = LayoutInflater.from(mContext).inflate(layoutRes, null);
-        return setView(view);
+        mLayoutRes = layoutRes;
+        if (isShowing()) {
+            attachView(inflate(layoutRes));
+            return this;
+        }
+        detachView();
+        return this;
     }
 
     public AnyWindow setView(@NonNull View view) {
+        mLayoutRes = 0;
+        attachView(view);
+        return this;
+    }
+
+    /**
+     * 正在显示时先结束停靠、吸附动画和手势，换view后在原位置继续显示
+     * {@link MoveMode#TRANSLATION}时只替换容器中的内容，否则重新登记新的view
+     */
+    private void attachView(@NonNull View view) {
+        boolean showing = isShowing();
+        if (showing) {
+            cancelDock();
+            undock();
+            mFlingAnimator.cancel();
+            mUpdateScheduler.cancel();
+            dragState = State.IDLE;
+            collapse();
+            if (mHostView == null) {
+                mManager.unregister(mWindowId);
+                mWindowId = AnyWindowManager.NO_ID;
+            }
+        }
+        if (mHostView != null) {
+            if (mView != null) {
+                mHostView.removeView(mView);
+            }
+            mHostView.addView(view, new FrameLayout.LayoutParams(mViewWidth, mViewHeight));
+        }
+        if (mView != null) {
+            mView.setOnTouchListener(null);
+            mView.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+        }
         mView = view;
         mView.setOnTouchListener(this);
-        mView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
-            @Override
-            public void onDraw() {
-                computeScroll();
+        mView.addOnLayoutChangeListener(mOnLayoutChangeListener);
+        if (showing) {
+            if (mWindowId == AnyWindowManager.NO_ID) {
+                mWindowId = mManager.register(getWindowView(), mParams, mMetrics, mRecordCallback);
+                mManager.setPaused(mWindowId, mUpdateScheduler.isPaused());
+                if (!mManager.show(mWindowId)) {
+                    onShowFailed();
+                    return;
+                }
+            } else {
+                mUpdateScheduler.flush();
             }
-        });
+            scheduleDock();
+        }
+    }
+
+    private void detachView() {
+        if (mView == null) {
+            return;
+        }
+        if (mHostView != null) {
+            mHostView.removeView(mView);
+        }
+        mView.setOnTouchListener(null);
+        mView.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+        mView = null;
+    }
+
+    /**
+     * 设置移动方式，默认为{@link MoveMode#WINDOW}，需在show之前调用
+     */
+    public AnyWindow setMoveMode(@NonNull MoveMode moveMode) {
+        if (isShowing()) {
+            throw new IllegalStateException("MoveMode must be set before show");
+        }
+        if (mMoveMode == moveMode) {
+            return this;
+        }
+        mMoveMode = moveMode;
+        if (mMoveMode == MoveMode.TRANSLATION) {
+            mHostView = new FrameLayout(mContext);
+            mHostView.setClipChildren(false);
+            if (mView != null) {
+                mHostView.addView(mView, new FrameLayout.LayoutParams(mViewWidth, mViewHeight));
+            }
+        } else {
+            if (mHostView != null && mView != null) {
+                mHostView.removeView(mView);
+            }
+            mHostView = null;
+        }
         return this;
     }
 
@@ -86,113 +380,970 @@ public class AnyWindow implements View.OnTouchListener, GestureDetector.OnGestur
         return this;
     }
 
-    public AnyWindow setViewSize(int width, int height) {
-        mParams.setSize(width, height);
+    /**
+     * 不在悬浮窗所在线程时会切换过去执行
+     */
+    public AnyWindow setViewSize(final int width, final int height) {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setViewSize(width, height);
+                }
+            });
+            return this;
+        }
+        undock();
+        mViewWidth = width;
+        mViewHeight = height;
+        if (mHostView != null && mView != null) {
+            setContentSize(width, height);
+        }
+        if (!mExpanded) {
+            mParams.setSize(width, height);
+        }
+        return this;
+    }
+
+    /**
+     * 设置松手后的吸附动画模型，默认为{@link SpringSnapEngine}
+     */
+    public AnyWindow setSnapEngine(@NonNull final SnapEngine snapEngine) {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setSnapEngine(snapEngine);
+                }
+            });
+            return this;
+        }
+        mFlingAnimator.setEngine(snapEngine);
         return this;
     }
 
-    public AnyWindow setViewLocation(int x, int y) {
-        boolean inx = x >= mFenceRect.left && x <= mFenceRect.right;
-        boolean iny = y >= mFenceRect.top && x <= mFenceRect.bottom;
+    /**
+     * 监听每次松手动画结束，可获取该次动画的帧统计
+     */
+    public AnyWindow setOnFlingListener(@Nullable OnFlingListener listener) {
+        mOnFlingListener = listener;
+        return this;
+    }
+
+    /**
+     * 开启拖拽位置预测
+     * 根据最近的触摸速度将悬浮窗位置外推到horizonMillis之后，抵消窗口更新带来的跟手延迟。
+     * 松手时会回到实际的触摸位置。
+     *
+     * @param horizonMillis 预测时长，0为关闭
+     * @param maxOffsetPx   预测位置与实际触摸位置的最大距离
+     */
+    public AnyWindow setTouchPrediction(long horizonMillis, int maxOffsetPx) {
+        mPredictionHorizonMillis = Math.max(0L, horizonMillis);
+        mPredictionMaxOffset = Math.max(0, maxOffsetPx);
+        return this;
+    }
+
+    /**
+     * 点击悬浮窗，移动未超过touch slop时松手视为点击
+     * 悬浮窗会拦截view的触摸事件，view自身的点击监听不会生效，需通过此方法设置
+     */
+    public AnyWindow setOnClickListener(@Nullable View.OnClickListener listener) {
+        mOnClickListener = listener;
+        return this;
+    }
+
+    /**
+     * 长按悬浮窗，设置后每次按下会发送一条延时消息，未设置时不会
+     */
+    public AnyWindow setOnLongClickListener(@Nullable View.OnLongClickListener listener) {
+        mOnLongClickListener = listener;
+        mGestureDetector.setLongPressEnabled(listener != null);
+        return this;
+    }
+
+    /**
+     * 记录收到的触摸事件，用于回放
+     */
+    public AnyWindow setTouchRecorder(@Nullable TouchRecorder recorder) {
+        mTouchRecorder = recorder;
+        return this;
+    }
+
+    /**
+     * 设置是否立即更新布局
+     * 默认按帧合并更新，每个vsync最多执行一次updateViewLayout
+     */
+    public AnyWindow setUpdateImmediate(final boolean immediate) {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setUpdateImmediate(immediate);
+                }
+            });
+            return this;
+        }
+        mUpdateScheduler.setImmediate(immediate);
+        return this;
+    }
+
+    /**
+     * 不在悬浮窗所在线程时会切换过去执行
+     */
+    public AnyWindow setViewLocation(final int x, final int y) {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setViewLocation(x, y);
+                }
+            });
+            return this;
+        }
+        Rect fence = mGeometry.getFenceRect();
+        boolean inx = x >= fence.left && x <= fence.right;
+        boolean iny = y >= fence.top && y <= fence.bottom;
         if (inx || iny) {
             int realx;
-            if (x < mFenceRect.left) {
-                realx = mFenceRect.left;
-            } else if (x > mFenceRect.right) {
-                realx = mFenceRect.right;
+            if (x < fence.left) {
+                realx = fence.left;
+            } else if (x > fence.right) {
+                realx = fence.right;
             } else {
                 realx = x;
             }
             int realy;
-            if (y < mFenceRect.top) {
-                realy = mFenceRect.top;
-            } else if (y > mFenceRect.bottom) {
-                realy = mFenceRect.bottom;
+            if (y < fence.top) {
+                realy = fence.top;
+            } else if (y > fence.bottom) {
+                realy = fence.bottom;
             } else {
                 realy = y;
             }
-            mParams.setLocation(realx, realy);
+            mViewX = realx;
+            mViewY = realy;
+            applyLocation();
+            reportBounds();
         } else {
-            mScroller.abortAnimation();
+            mFlingAnimator.cancel();
+        }
+        return this;
+    }
+
+    /**
+     * 在悬浮窗所在线程的消息队列空闲时提前inflate，避免第一次show时的耗时
+     */
+    public AnyWindow preInflate() {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    preInflate();
+                }
+            });
+            return this;
+        }
+        if (mLayoutRes == 0 || mPreInflateHandler != null) {
+            return this;
+        }
+        mPreInflateHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                mPreInflateHandler = null;
+                ensureView();
+                return false;
+            }
+        };
+        Looper.myQueue().addIdleHandler(mPreInflateHandler);
+        return this;
+    }
+
+    /**
+     * 开启贴边停靠
+     * 静止超过指定时长后悬浮窗滑到屏幕外，只露出贴边的一条，触摸后恢复。
+     * {@link MoveMode#TRANSLATION}时窗口同时缩小为露出部分的大小，合成的面积随之减少；
+     * {@link MoveMode#WINDOW}时窗口大小不变，只移出屏幕，合成和绘制的开销都不会减少，
+     * 需要减少停靠时的开销请使用{@link MoveMode#TRANSLATION}。
+     *
+     * 不在悬浮窗所在线程时会切换过去执行
+     *
+     * @param idleMillis   静止多久后停靠，0为关闭
+     * @param visibleWidth 停靠时露出的宽度
+     */
+    public AnyWindow setEdgeDock(final long idleMillis, final int visibleWidth) {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setEdgeDock(idleMillis, visibleWidth);
+                }
+            });
+            return this;
         }
+        mDockIdleMillis = Math.max(0L, idleMillis);
+        mDockVisibleWidth = Math.max(0, visibleWidth);
+        if (mDockIdleMillis == 0L) {
+            undock();
+        }
+        scheduleDock();
+        return this;
+    }
+
+    /**
+     * 开启位置持久化，每次松手动画结束后保存悬浮窗位置和大小，下次show时恢复
+     * 保存的文件在后台读取，读取完成前show时先显示在默认位置，读取后未被移动过才移到保存的位置
+     * 同一应用内不同的悬浮窗需使用不同的id
+     *
+     * @param persistId 不为0的固定id，0为关闭
+     */
+    public AnyWindow setPersistId(int persistId) {
+        mPersistId = persistId;
+        if (mPersistId != 0 && mPositionStore == null) {
+            mPositionStore = WindowPositionStore.get(mContext);
+            mPositionStore.preload();
+        }
+        return this;
+    }
+
+    /**
+     * 删除已保存的位置
+     */
+    public AnyWindow clearPersistedPosition() {
+        if (mPersistId != 0) {
+            mPositionStore.remove(mPersistId);
+        }
+        return this;
+    }
+
+    /**
+     * 监听停靠状态变化
+     */
+    public AnyWindow setOnDockListener(@Nullable OnDockListener listener) {
+        mOnDockListener = listener;
+        return this;
+    }
+
+    public boolean isDocked() {
+        return mDocked;
+    }
+
+    /**
+     * 未显示超过指定时长后自动释放资源，下次show时重新创建
+     *
+     * @param idleMillis 0为不自动释放，内存不足时仍会释放
+     */
+    public AnyWindow setIdleRelease(long idleMillis) {
+        mIdleReleaseMillis = Math.max(0L, idleMillis);
+        if (!isShowing()) {
+            mMemoryPolicy.onWindowHidden(this);
+        }
+        return this;
+    }
+
+    /**
+     * 释放资源时回调，可在此回收悬浮窗使用的位图等资源
+     */
+    public AnyWindow setOnReleaseListener(@Nullable OnReleaseListener listener) {
+        mOnReleaseListener = listener;
         return this;
     }
 
+    /**
+     * 释放未显示的悬浮窗持有的资源
+     * 使用布局id时会丢弃view树，下次show时重新inflate；直接设置的view无法重建，会保留。
+     * 不在悬浮窗所在线程时切换过去执行，是否释放可通过{@link #setOnReleaseListener}得知。
+     *
+     * @return 在悬浮窗所在线程完成了释放时返回true；正在显示，或已切换到悬浮窗所在线程稍后执行时返回false
+     */
+    public boolean releaseResources() {
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    releaseResources();
+                }
+            });
+            return false;
+        }
+        if (isShowing()) {
+            return false;
+        }
+        if (mOnReleaseListener != null) {
+            mOnReleaseListener.onRelease(this);
+        }
+        mTouchSamples = null;
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+        if (mLayoutRes != 0) {
+            detachView();
+        }
+        return true;
+    }
+
+    /**
+     * 估算当前持有的资源字节数，包括view树（每个view对象约1KB的粗略估算）、
+     * 其中的位图和触摸缓冲区
+     */
+    public long getRetainedBytes() {
+        long bytes = WindowMemoryPolicy.measureViewBytes(getWindowView());
+        if (mTouchSamples != null) {
+            bytes += mTouchSamples.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 自动释放的时间点，0为不自动释放
+     */
+    long getIdleReleaseDeadline() {
+        if (mIdleReleaseMillis <= 0L) {
+            return 0L;
+        }
+        return mIdleSinceMillis + mIdleReleaseMillis;
+    }
+
+    /**
+     * 在悬浮窗所在线程执行，当前已在该线程时立即执行
+     * 用于在其他线程更新悬浮窗内容
+     */
+    public void runOnWindowThread(@NonNull Runnable action) {
+        if (isWindowThread()) {
+            action.run();
+        } else {
+            mHandler.post(action);
+        }
+    }
+
+    /**
+     * 宿主Activity不可见，松手动画直接停到终点，之后的更新合并到重新可见时执行，
+     * 贴边隐藏的计时也停止
+     */
+    void onHostStopped() {
+        runOnWindowThread(new Runnable() {
+            @Override
+            public void run() {
+                mUpdateScheduler.setPaused(true);
+                mFlingAnimator.finish();
+                mManager.setPaused(mWindowId, true);
+                cancelDock();
+            }
+        });
+    }
+
+    /**
+     * 宿主Activity重新可见，合并的更新只执行一次，并重新开始贴边隐藏的计时
+     */
+    void onHostStarted() {
+        runOnWindowThread(new Runnable() {
+            @Override
+            public void run() {
+                mUpdateScheduler.setPaused(false);
+                mManager.setPaused(mWindowId, false);
+                scheduleDock();
+            }
+        });
+    }
+
+    /**
+     * 宿主Activity销毁，移除悬浮窗避免泄漏
+     */
+    void onHostDestroyed() {
+        dismiss();
+    }
+
+    /**
+     * 宿主Activity是否不可见，{@link Scope#APPLICATION}时始终为false
+     */
+    public boolean isHostStopped() {
+        return mUpdateScheduler.isPaused();
+    }
+
+    @NonNull
+    public Scope getScope() {
+        return mScope;
+    }
+
+    /**
+     * 已显示时再次调用show而省去的添加次数
+     * 乘以{@link #getAttachTimeNanos()}可估算节省的耗时
+     */
+    public long getAvoidedAttachCount() {
+        return mAvoidedAttachCount;
+    }
+
+    /**
+     * 当前线程是否为悬浮窗所在线程
+     */
+    public boolean isWindowThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    /**
+     * 可在任意线程调用，不在悬浮窗所在线程时会切换过去执行
+     * 已显示时不做任何操作，位置和状态保持不变
+     */
     public void show() {
-        setViewLocation(mFenceRect.right, (int) (mFenceRect.height() * 0.6F));
-        mManager.addView(mView, mParams.get());
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    show();
+                }
+            });
+            return;
+        }
+        if (mWindowId != AnyWindowManager.NO_ID && mManager.isAttached(mWindowId)) {
+            mAvoidedAttachCount++;
+            return;
+        }
+        ensureView();
+        mMemoryPolicy.onWindowShown(this);
+        mMovedSinceShow = false;
+        if (!restorePosition()) {
+            Rect fence = mGeometry.getFenceRect();
+            setViewLocation(fence.right, fence.top + (int) (fence.height() * 0.6F));
+            restorePositionAfterLoad();
+        }
+        mUpdateScheduler.cancel();
+        mFlingAnimator.setRefreshRate(mManager.getRefreshRate());
+        long start = System.nanoTime();
+        if (mWindowId == AnyWindowManager.NO_ID) {
+            mWindowId = mManager.register(getWindowView(), mParams, mMetrics, mRecordCallback);
+            mManager.setPaused(mWindowId, mUpdateScheduler.isPaused());
+        }
+        boolean shown = mManager.show(mWindowId);
+        mAttachNanos = System.nanoTime() - start;
+        if (!shown) {
+            onShowFailed();
+            return;
+        }
+        reportBounds();
+        mGeometryVersion = mGeometry.getVersion();
+        mPlacedFence.set(mGeometry.getFenceRect());
+        mGeometry.addOnChangeListener(mOnGeometryChangeListener);
+        scheduleDock();
     }
 
+    /**
+     * 可在任意线程调用，不在悬浮窗所在线程时会切换过去执行
+     */
     public void dismiss() {
-        mManager.removeView(mView);
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    dismiss();
+                }
+            });
+            return;
+        }
+        cancelDock();
+        resetDock();
+        mFlingAnimator.cancel();
+        mUpdateScheduler.cancel();
+        mGeometry.removeOnChangeListener(mOnGeometryChangeListener);
+        mHandler.removeCallbacks(mGeometryCheckAction);
+        dragState = State.IDLE;
+        collapse();
+        mManager.unregister(mWindowId);
+        mWindowId = AnyWindowManager.NO_ID;
+        mIdleSinceMillis = SystemClock.uptimeMillis();
+        mMemoryPolicy.onWindowHidden(this);
+    }
+
+    /**
+     * 添加窗口失败（如没有悬浮窗权限）时不保留登记，避免失败后仍被当作显示中
+     */
+    private void onShowFailed() {
+        mManager.unregister(mWindowId);
+        mWindowId = AnyWindowManager.NO_ID;
+        mIdleSinceMillis = SystemClock.uptimeMillis();
+        mMemoryPolicy.onWindowHidden(this);
+    }
+
+    public boolean isShowing() {
+        return mWindowId != AnyWindowManager.NO_ID;
+    }
+
+    /**
+     * 在manager中的id，未显示时为{@link AnyWindowManager#NO_ID}
+     */
+    public int getId() {
+        return mWindowId;
+    }
+
+    /**
+     * 使用布局id且尚未inflate时会立即inflate
+     */
+    public View getView() {
+        ensureView();
+        return mView;
+    }
+
+    /**
+     * 最近一次inflate的耗时，纳秒，未inflate过时为0
+     */
+    public long getInflateTimeNanos() {
+        return mInflateNanos;
+    }
+
+    /**
+     * 最近一次show中注册并添加到WindowManager的耗时，纳秒
+     */
+    public long getAttachTimeNanos() {
+        return mAttachNanos;
+    }
+
+    /**
+     * 悬浮窗当前位置x
+     */
+    public int getViewX() {
+        return mViewX;
+    }
+
+    /**
+     * 悬浮窗当前位置y
+     */
+    public int getViewY() {
+        return mViewY;
+    }
+
+    private void ensureView() {
+        if (mView != null || mLayoutRes == 0) {
+            return;
+        }
+        attachView(inflate(mLayoutRes));
+    }
+
+    private View inflate(@LayoutRes int layoutRes) {
+        long start = System.nanoTime();
+        View view = LayoutInflater.from(mContext).inflate(layoutRes, null);
+        mInflateNanos = System.nanoTime() - start;
+        return view;
+    }
+
+    /**
+     * 添加到WindowManager的根view，{@link MoveMode#TRANSLATION}时为包裹内容的容器
+     */
+    private View getWindowView() {
+        return mHostView != null ? mHostView : mView;
+    }
+
+    /**
+     * 将静止时的位置告知manager，其他悬浮窗吸附时会避开
+     */
+    private void reportBounds() {
+        if (mWindowId == AnyWindowManager.NO_ID || dragState != State.IDLE) {
+            return;
+        }
+        mManager.setWindowBounds(mWindowId, mViewX, mViewY,
+                mViewX + mView.getWidth(), mViewY + mView.getHeight());
+    }
+
+    private boolean restorePosition() {
+        if (mPersistId == 0 || !mPositionStore.get(mPersistId, mPersistBuffer)) {
+            return false;
+        }
+        setViewSize(mPersistBuffer[2], mPersistBuffer[3]);
+        setViewLocation(mPersistBuffer[0], mPersistBuffer[1]);
+        return true;
+    }
+
+    /**
+     * 文件还没读完时先显示在默认位置，读完后如果仍未被移动过再移到保存的位置
+     */
+    private void restorePositionAfterLoad() {
+        if (mPersistId == 0 || mPositionStore.isLoaded()) {
+            return;
+        }
+        final int persistId = mPersistId;
+        mPositionStore.postAfterLoad(new Runnable() {
+            @Override
+            public void run() {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (persistId != mPersistId || !isShowing() || mMovedSinceShow || dragState != State.IDLE) {
+                            return;
+                        }
+                        if (!mPositionStore.get(persistId, mPersistBuffer)) {
+                            return;
+                        }
+                        cancelDock();
+                        setViewSize(mPersistBuffer[2], mPersistBuffer[3]);
+                        moveTo(mPersistBuffer[0], mPersistBuffer[1]);
+                        mUpdateScheduler.flush();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 只保存静止后的位置，写文件在后台合并执行
+     */
+    private void savePosition() {
+        if (mPersistId == 0 || !isShowing()) {
+            return;
+        }
+        mPositionStore.put(mPersistId, mViewX, mViewY, mViewWidth, mViewHeight);
+    }
+
+    private void scheduleDock() {
+        cancelDock();
+        if (mDockIdleMillis <= 0L || mView == null || !isShowing() || dragState != State.IDLE
+                || mUpdateScheduler.isPaused()) {
+            return;
+        }
+        mHandler.postDelayed(mDockAction, mDockIdleMillis);
+    }
+
+    /**
+     * 停靠计时放在悬浮窗线程的Handler上，按下时取消不经过view
+     */
+    private void cancelDock() {
+        mHandler.removeCallbacks(mDockAction);
+    }
+
+    /**
+     * 滑到最近的屏幕边缘外，只露出一条
+     */
+    private void dock() {
+        if (mDocked || !isShowing() || dragState != State.IDLE) {
+            return;
+        }
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        if (width <= mDockVisibleWidth || height <= 0) {
+            return;
+        }
+        mDocked = true;
+        Rect fence = mGeometry.getFenceRect();
+        boolean left = mViewX + width / 2F < fence.exactCenterX();
+        if (mHostView != null) {
+            // 内容保持原大小，窗口只保留露出的部分
+            setContentSize(width, height);
+            mParams.setSize(mDockVisibleWidth, height);
+            mParams.setLocation(left ? fence.left : fence.right - mDockVisibleWidth, mViewY);
+            mView.setTranslationX(left ? mDockVisibleWidth - width : 0F);
+        } else {
+            // view就是窗口的根布局，缩小窗口会让内容按露出部分重新布局，只能整体移出屏幕
+            mParams.addFlags(WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS);
+            mParams.setLocation(left ? fence.left - width + mDockVisibleWidth : fence.right - mDockVisibleWidth, mViewY);
+        }
+        mUpdateScheduler.flush();
+        if (mOnDockListener != null) {
+            mOnDockListener.onDockChanged(this, true);
+        }
+    }
+
+    /**
+     * 恢复到停靠前的位置和大小
+     */
+    private void undock() {
+        if (!mDocked) {
+            return;
+        }
+        resetDock();
+        applyLocation();
+        mUpdateScheduler.flush();
+        if (mOnDockListener != null) {
+            mOnDockListener.onDockChanged(this, false);
+        }
+    }
+
+    private void resetDock() {
+        if (!mDocked) {
+            return;
+        }
+        mDocked = false;
+        mView.setTranslationX(0F);
+        if (mHostView != null) {
+            setContentSize(mViewWidth, mViewHeight);
+            mParams.setSize(mViewWidth, mViewHeight);
+        } else {
+            mParams.removeFlags(WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS);
+        }
+    }
+
+    private void setContentSize(int width, int height) {
+        ViewGroup.LayoutParams lp = mView.getLayoutParams();
+        if (lp != null) {
+            lp.width = width;
+            lp.height = height;
+            mView.setLayoutParams(lp);
+        }
+    }
+
+    /**
+     * 停止停靠和吸附动画后移动到指定位置；拖拽中则平移拖拽的起点，手指继续相对移动
+     * {@link MoveMode#TRANSLATION}展开时只平移内容，窗口保持覆盖整个可移动区域
+     */
+    private void moveTo(int x, int y) {
+        cancelDock();
+        undock();
+        mFlingAnimator.cancel();
+        int oldX = mViewX;
+        int oldY = mViewY;
+        setViewLocation(x, y);
+        if (dragState == State.DRAGGING) {
+            dragStartX += mViewX - oldX;
+            dragStartY += mViewY - oldY;
+            dragLastX += mViewX - oldX;
+            dragLastY += mViewY - oldY;
+            return;
+        }
+        savePosition();
+        scheduleDock();
+    }
+
+    /**
+     * 可移动区域变化后移到新区域的同一侧边缘，竖直方向保持相对位置
+     * 拖拽中只记录新的区域，松手吸附时按新的区域计算
+     */
+    private void checkGeometry() {
+        if (!isShowing()) {
+            return;
+        }
+        int version = mGeometry.getVersion();
+        if (version == mGeometryVersion) {
+            return;
+        }
+        mGeometryVersion = version;
+        Rect fence = mGeometry.getFenceRect();
+        if (dragState == State.DRAGGING) {
+            mPlacedFence.set(fence);
+            return;
+        }
+        mFlingAnimator.finish();
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        boolean left = mViewX + width / 2F < mPlacedFence.exactCenterX();
+        int oldRangeY = mPlacedFence.height() - height;
+        float fractionY = oldRangeY > 0 ? (mViewY - mPlacedFence.top) / (float) oldRangeY : 0F;
+        fractionY = Math.max(0F, Math.min(1F, fractionY));
+        mPlacedFence.set(fence);
+        int x = left ? fence.left : Math.max(fence.left, fence.right - width);
+        int y = fence.top + Math.round(fractionY * Math.max(0, fence.height() - height));
+        moveTo(x, y);
+        mUpdateScheduler.flush();
+    }
+
+    private void applyLocation() {
+        if (mExpanded) {
+            mView.setTranslationX(mViewX - mParams.get().x);
+            mView.setTranslationY(mViewY - mParams.get().y);
+        } else {
+            mParams.setLocation(mViewX, mViewY);
+        }
+    }
+
+    /**
+     * 将窗口扩大到整个可移动区域，之后只平移内容
+     */
+    private void expand() {
+        if (mExpanded || mMoveMode != MoveMode.TRANSLATION) {
+            return;
+        }
+        mExpanded = true;
+        if (mView.isHardwareAccelerated()) {
+            mView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+        Rect fence = mGeometry.getFenceRect();
+        mParams.setLocation(fence.left, fence.top);
+        mParams.setSize(fence.width(), fence.height());
+        applyLocation();
+        mUpdateScheduler.flush();
+    }
+
+    /**
+     * 窗口恢复为内容大小并移动到内容所在位置
+     */
+    private void collapse() {
+        if (!mExpanded) {
+            return;
+        }
+        mExpanded = false;
+        mView.setTranslationX(0F);
+        mView.setTranslationY(0F);
+        mView.setLayerType(View.LAYER_TYPE_NONE, null);
+        mParams.setSize(mViewWidth, mViewHeight);
+        applyLocation();
+        mUpdateScheduler.flush();
     }
 
+    @NonNull
+    public AnyWindowManager getManager() {
+        return mManager;
+    }
+
+    /**
+     * 请求更新布局，同一帧内的多次请求只会执行一次
+     * 可在任意线程调用，不在悬浮窗所在线程时会切换过去执行
+     */
     public void update() {
-        mManager.updateView(mView, mParams.get());
+        if (!isWindowThread()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    update();
+                }
+            });
+            return;
+        }
+        mUpdateScheduler.request();
+    }
+
+    /**
+     * 请求更新的次数
+     */
+    public long getUpdateRequestCount() {
+        return mUpdateScheduler.getRequestCount();
+    }
+
+    /**
+     * 合并后提交给manager的更新次数
+     */
+    public long getUpdateFlushCount() {
+        return mUpdateScheduler.getFlushCount();
+    }
+
+    /**
+     * 参数未变化而跳过updateViewLayout的次数
+     */
+    public long getUpdateSkippedCount() {
+        return mManager.getSkippedUpdateCount(mWindowId);
+    }
+
+    /**
+     * 运行统计，多次show之间累计
+     */
+    @NonNull
+    public AnyWindowMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 手势识别发送到Handler的消息数，只有设置了长按监听时才会发送
+     */
+    public long getGestureMessageCount() {
+        return mGestureDetector.getPostedMessageCount();
+    }
+
+    /**
+     * 最近一次松手动画的帧统计
+     */
+    @NonNull
+    public FlingStats getFlingStats() {
+        return mFlingAnimator.getStats();
     }
 
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public boolean onTouch(View v, MotionEvent event) {
-        boolean consumed = mGestureDetector.onTouchEvent(event);
-        switch (event.getAction()) {
-            default:
-                break;
-            case MotionEvent.ACTION_UP:
-                onUp(event);
-                break;
+        mMetrics.onTouchEvent();
+        if (mTouchRecorder != null) {
+            mTouchRecorder.record(event);
         }
-        return consumed;
+        addVelocityMovement(event);
+        return mGestureDetector.onTouchEvent(event);
+    }
+
+    /**
+     * 抛出速度由VelocityTracker计算，addMovement会一并使用批量的历史采样点
+     * 窗口跟随手指移动，view内坐标不连续，先换算为屏幕坐标
+     */
+    private void addVelocityMovement(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            if (mVelocityTracker == null) {
+                mVelocityTracker = VelocityTracker.obtain();
+            } else {
+                mVelocityTracker.clear();
+            }
+        }
+        if (mVelocityTracker == null) {
+            return;
+        }
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        mVelocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
     }
 
     @Override
-    public boolean onDown(MotionEvent e) {
-        Log.d("AnyWindow", "onDown");
+    public void onDown(@NonNull MotionEvent e) {
+        if (AnyWindowTracer.ENABLED) {
+            AnyWindowTracer.down(this);
+        }
+        // 取消动画会回调onFlingEnd重新开始停靠计时，需在cancelDock之前
+        mFlingAnimator.cancel();
+        cancelDock();
+        undock();
         dragState = State.IDLE;
-        return true;
+        if (mTouchSamples == null) {
+            mTouchSamples = new TouchSampleBuffer(TOUCH_SAMPLE_CAPACITY);
+        }
+        mTouchSamples.clear();
+        mTouchSamples.add(e.getRawX(), e.getRawY(), e.getEventTime());
     }
 
-    public void onUp(MotionEvent e) {
-        Log.d("AnyWindow", "onUp");
+    @Override
+    public void onRelease(@NonNull MotionEvent e) {
+        if (AnyWindowTracer.ENABLED) {
+            AnyWindowTracer.up(this);
+        }
         if (dragState != State.DRAGGING) {
             return;
         }
         dragState = State.FLING;
+        if (mPredictionHorizonMillis > 0L) {
+            setViewLocation((int) dragLastX, (int) dragLastY);
+        }
         float vx = 0F;
         float vy = 0F;
         if (mVelocityTracker != null) {
-            mVelocityTracker.computeCurrentVelocity(1000, Math.max(mFenceRect.width(), mFenceRect.height()));
+            Rect fence = mGeometry.getFenceRect();
+            mVelocityTracker.computeCurrentVelocity(1000, Math.max(fence.width(), fence.height()));
             vx = mVelocityTracker.getXVelocity();
             vy = mVelocityTracker.getYVelocity();
-            mVelocityTracker.clear();
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
         }
         onDragEnd(vx, vy);
-        return;
     }
 
     @Override
-    public void onShowPress(MotionEvent e) {
-        Log.d("AnyWindow", "onShowPress");
+    public void onTap(@NonNull MotionEvent e) {
+        if (AnyWindowTracer.ENABLED) {
+            AnyWindowTracer.up(this);
+        }
+        scheduleDock();
+        if (mOnClickListener != null) {
+            mOnClickListener.onClick(mView);
+        }
     }
 
     @Override
-    public boolean onSingleTapUp(MotionEvent e) {
-        Log.d("AnyWindow", "onSingleTapUp");
-        return false;
+    public void onLongPress() {
+        if (mOnLongClickListener != null) {
+            mOnLongClickListener.onLongClick(mView);
+        }
     }
 
     @Override
-    public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-        Log.d("AnyWindow", "onScroll[" + distanceX + "," + distanceY + "]");
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
+    public void onDrag(@NonNull MotionEvent e) {
+        float touchX = e.getRawX();
+        float touchY = e.getRawY();
+        // 历史采样点只有相对坐标，用当前点的偏移换算为屏幕坐标
+        float offsetX = touchX - e.getX();
+        float offsetY = touchY - e.getY();
+        for (int i = 0, size = e.getHistorySize(); i < size; i++) {
+            mTouchSamples.add(e.getHistoricalX(i) + offsetX, e.getHistoricalY(i) + offsetY,
+                    e.getHistoricalEventTime(i));
         }
-        e2.setLocation(e2.getRawX(), e2.getRawY());
-        mVelocityTracker.addMovement(e2);
-        float touchX = e2.getRawX();
-        float touchY = e2.getRawY();
+        mTouchSamples.add(touchX, touchY, e.getEventTime());
         if (dragState == State.IDLE) {
             dragState = State.DRAGGING;
             dragStartEventX = touchX;
@@ -203,83 +1354,88 @@ public class AnyWindow implements View.OnTouchListener, GestureDetector.OnGestur
             float dargY = touchY - dragStartEventY;
             onDragging(dargX, dargY);
         }
-        return true;
-    }
-
-    @Override
-    public void onLongPress(MotionEvent e) {
-        Log.d("AnyWindow", "onLongPress");
-    }
-
-    @Override
-    public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-        Log.d("AnyWindow", "onFling[" + velocityX + "," + velocityY + "]");
-        return false;
     }
 
     private void onDragStart() {
-        Log.d("AnyWindow", "onDragStart");
-        dragStartX = mParams.get().x;
-        dragStartY = mParams.get().y;
-        mDragPath.reset();
-        mDragPath.rewind();
-        mDragPath.moveTo(mParams.get().x, mParams.get().y);
+        mMovedSinceShow = true;
+        mMetrics.onDragStart();
+        mGeometry.applyWindowInsets(mView);
+        dragStartX = mViewX;
+        dragStartY = mViewY;
+        expand();
+        dragLastX = dragStartX;
+        dragLastY = dragStartY;
+        if (AnyWindowTracer.ENABLED) {
+            AnyWindowTracer.dragStart(this, dragStartX, dragStartY);
+        }
     }
 
     private void onDragging(float moveX, float moveY) {
-        Log.d("AnyWindow", "onDragging[" + moveX + "," + moveY + "]");
+        if (AnyWindowTracer.ENABLED) {
+            AnyWindowTracer.dragging(this, moveX, moveY);
+        }
         float x = dragStartX + moveX;
         float y = dragStartY + moveY;
-        float cX = (x + mParams.get().x) / 2F;
-        float cY = (y + mParams.get().y) / 2F;
-        mDragPath.quadTo(dragStartX, dragStartY, cX, cY);
+        dragLastX = x;
+        dragLastY = y;
+        if (mPredictionHorizonMillis > 0L && mTouchSamples.computeVelocity(PREDICTION_WINDOW_MILLIS)) {
+            long now = SystemClock.uptimeMillis();
+            float dt = (now + mPredictionHorizonMillis - mTouchSamples.getTime(0)) / 1000F;
+            float offsetX = mTouchSamples.getVelocityX() * dt;
+            float offsetY = mTouchSamples.getVelocityY() * dt;
+            float offset = (float) Math.hypot(offsetX, offsetY);
+            if (offset > mPredictionMaxOffset) {
+                float scale = mPredictionMaxOffset / offset;
+                offsetX *= scale;
+                offsetY *= scale;
+            }
+            x += offsetX;
+            y += offsetY;
+        }
         setViewLocation((int) x, (int) y);
         update();
     }
 
     private void onDragEnd(float velocityX, float velocityY) {
-        Log.d("AnyWindow", "onDragEnd[" + velocityX + "," + velocityY + "]");
-        float startX = mParams.get().x;
-        float startY = mParams.get().y;
+        Rect fence = mGeometry.getFenceRect();
+        float startX = mViewX;
+        float startY = mViewY;
         float startCenterX = startX + mView.getWidth() / 2F;
         float startCenterY = startY + mView.getHeight() / 2F;
         float endX;
-        if (startCenterX < mFenceRect.width() / 2F) {
-            endX = 0;
+        if (startCenterX < fence.exactCenterX()) {
+            endX = fence.left;
         } else {
-            endX = mFenceRect.width() - mView.getWidth();
+            endX = fence.right - mView.getWidth();
         }
         float endY;
-        if (velocityX == 0F && velocityY == 8F) {
+        if (velocityX == 0F) {
             endY = startY;
         } else {
             float dx = endX - startX;
             float dy = Math.abs(dx) * (velocityY / Math.abs(velocityX));
             endY = startY + dy;
         }
-        PathMeasure pm = new PathMeasure(mDragPath, false);
-        float[] pos = new float[2];
-        float[] tan = new float[2];
-        pm.getPosTan(pm.getLength(), pos, tan);
-        float degrees = (float) (Math.atan2(tan[1], tan[0]) * 180F / Math.PI);
-        Log.d("AnyWindow", "onDragEnd degrees=" + degrees);
-        Log.d("AnyWindow", "onDragEnd end[" + endX + "," + endY + "]");
-        mScroller.startScroll((int) startX, (int) startY, (int) (endX - startX), (int) (endY - startY));
-        computeScroll();
+        endY = mManager.resolveSnapY(mWindowId, (int) endX, (int) endY,
+                mView.getWidth(), mView.getHeight(), fence.top, fence.bottom - mView.getHeight());
+        if (AnyWindowTracer.ENABLED && AnyWindowTracer.hasListener()) {
+            float degrees = mTouchSamples.getDirectionDegrees(DIRECTION_WINDOW_MILLIS);
+            AnyWindowTracer.dragEnd(this, velocityX, velocityY, degrees);
+            AnyWindowTracer.flingStart(this, startX, startY, endX, endY);
+        }
+        mFlingAnimator.start(startX, startY, velocityX, velocityY, endX, endY);
     }
 
-    private void computeScroll() {
-        if (dragState != State.FLING) {
-            return;
-        }
-        if (mScroller.computeScrollOffset()) {
-            float x = mScroller.getCurrX();
-            float y = mScroller.getCurrY();
-            setViewLocation((int) x, (int) y);
-            update();
-        } else {
-            dragState = State.IDLE;
-        }
+    public interface OnDockListener {
+        void onDockChanged(@NonNull AnyWindow window, boolean docked);
+    }
+
+    public interface OnReleaseListener {
+        void onRelease(@NonNull AnyWindow window);
+    }
+
+    public interface OnFlingListener {
+        void onFlingEnd(@NonNull AnyWindow window, @NonNull FlingStats stats);
     }
 
 }
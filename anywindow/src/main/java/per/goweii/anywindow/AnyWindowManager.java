@@ -3,11 +3,21 @@ package per.goweii.anywindow;
 import android.app.Activity;
 import android.content.Context;
 import android.content.ContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.AnyThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.WindowManager;
 
+import java.util.Arrays;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 描述：
  *
@@ -16,13 +26,37 @@ import android.view.WindowManager;
  */
 public class AnyWindowManager {
 
-    private static AnyWindowManager mInstance;
+    public static final int NO_ID = 0;
+
+    private static volatile AnyWindowManager mInstance;
+
+    /**
+     * id在进程内唯一，不同manager的悬浮窗可以共用同一个吸附避让区域
+     */
+    private static final AtomicInteger sNextId = new AtomicInteger(NO_ID + 1);
+    /**
+     * 同一个WindowManager中的悬浮窗显示在同一块屏幕上，不论由哪个manager添加，吸附时都互相避让
+     */
+    private static final WeakHashMap<WindowManager, SnapLayoutSolver> sSnapSolvers = new WeakHashMap<>();
 
-    private WindowManager mWindowManager;
+    private final WindowManager mWindowManager;
+    private final Looper mLooper;
+    private final Handler mHandler;
+    private final SparseArray<WindowRecord> mWindows = new SparseArray<>();
+    private final WindowUpdateQueue mUpdateQueue;
+    private final SnapLayoutSolver mSnapSolver;
+    private final AnyWindowMetrics mMetrics = new AnyWindowMetrics();
+    private DisplayGeometry mDisplayGeometry = null;
+    private long mTotalUpdateCount = 0L;
+    private long mTotalSkippedUpdateCount = 0L;
 
     public static AnyWindowManager getAttachToSystem(@NonNull Context context) {
         if (mInstance == null) {
-            mInstance = new AnyWindowManager(getSystemWindowManager(context));
+            synchronized (AnyWindowManager.class) {
+                if (mInstance == null) {
+                    mInstance = new AnyWindowManager(getSystemWindowManager(context.getApplicationContext()));
+                }
+            }
         }
         return mInstance;
     }
@@ -31,6 +65,24 @@ public class AnyWindowManager {
         return new AnyWindowManager(getActivityWindowManager(context));
     }
 
+    /**
+     * 所有悬浮窗都在looper所在线程添加、更新和移除，该manager的方法也只能在此线程调用
+     */
+    public static AnyWindowManager newAttachToActivity(@NonNull Context context, @NonNull Looper looper) {
+        return new AnyWindowManager(getActivityWindowManager(context), looper);
+    }
+
+    private static SnapLayoutSolver getSnapSolver(@NonNull WindowManager windowManager) {
+        synchronized (sSnapSolvers) {
+            SnapLayoutSolver solver = sSnapSolvers.get(windowManager);
+            if (solver == null) {
+                solver = new SnapLayoutSolver();
+                sSnapSolvers.put(windowManager, solver);
+            }
+            return solver;
+        }
+    }
+
     private static WindowManager getSystemWindowManager(@NonNull Context context) {
         return (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
     }
@@ -52,37 +104,124 @@ public class AnyWindowManager {
     }
 
     public AnyWindowManager(WindowManager windowManager) {
+        this(windowManager, Looper.getMainLooper());
+    }
+
+    public AnyWindowManager(WindowManager windowManager, @NonNull Looper looper) {
         if (windowManager == null) {
             throw new NullPointerException("WindowManager mast not be null");
         }
         mWindowManager = windowManager;
+        mLooper = looper;
+        mHandler = new Handler(looper);
+        mSnapSolver = getSnapSolver(windowManager);
+        mUpdateQueue = new WindowUpdateQueue(mLooper, new WindowUpdateQueue.Consumer() {
+            @Override
+            public void onApply(int id, int fields, int x, int y, int width, int height, float alpha) {
+                WindowRecord record = mWindows.get(id);
+                if (record == null) {
+                    return;
+                }
+                if ((fields & WindowUpdateQueue.FIELD_LOCATION) != 0) {
+                    setRecordLocation(record, x, y);
+                }
+                if ((fields & WindowUpdateQueue.FIELD_SIZE) != 0) {
+                    setRecordSize(record, width, height);
+                }
+                if ((fields & WindowUpdateQueue.FIELD_ALPHA) != 0) {
+                    record.params.setAlpha(alpha);
+                }
+                updateRecord(record);
+            }
+        });
     }
 
     /**
-     * 添加悬浮窗
+     * 登记悬浮窗，不会立即显示
+     *
+     * @return 悬浮窗id，使用同一个params再次登记时返回原来的id；使用不同的params再次登记时，
+     * 原来的登记会被取消（已显示的会被移除），返回新的id
      */
-    public void addView(View view, WindowManager.LayoutParams params) {
-        if (view.isAttachedToWindow()) {
-            return;
+    public int register(@NonNull View view, @NonNull WindowManager.LayoutParams params) {
+        WindowRecord record = findRecord(view);
+        if (record != null && record.params.get() == params) {
+            return record.id;
         }
-        try {
-            mWindowManager.addView(view, params);
-        } catch (Exception e) {
-            e.printStackTrace();
+        return register(view, WindowParams.with(params));
+    }
+
+    int register(@NonNull View view, @NonNull WindowParams params) {
+        return register(view, params, new AnyWindowMetrics());
+    }
+
+    int register(@NonNull View view, @NonNull WindowParams params, @NonNull AnyWindowMetrics metrics) {
+        return register(view, params, metrics, null);
+    }
+
+    /**
+     * @param callback 通过{@link #move(int, int, int)}、{@link #postLocation(int, int, int)}
+     *                 和{@link Batch#move(int, int, int)}移动，或通过{@link #postSize(int, int, int)}
+     *                 改变大小时回调，由悬浮窗同步自己记录的位置和大小
+     */
+    int register(@NonNull View view, @NonNull WindowParams params, @NonNull AnyWindowMetrics metrics,
+                 @Nullable WindowRecord.Callback callback) {
+        WindowRecord record = findRecord(view);
+        if (record != null) {
+            if (record.params == params) {
+                return record.id;
+            }
+            // 参数对象变了，按新的悬浮窗重新登记，旧记录的窗口、未执行的更新和避让区域一并清除
+            // 同一个view马上会重新添加，需立即移除，否则仍处于attached状态
+            hideRecord(record, true);
+            unregister(record.id);
+        }
+        int id = sNextId.getAndIncrement();
+        mWindows.put(id, new WindowRecord(id, view, params, metrics, callback));
+        mUpdateQueue.register(id);
+        return id;
+    }
+
+    /**
+     * 取消登记，已显示的悬浮窗会被移除
+     */
+    public void unregister(int id) {
+        WindowRecord record = mWindows.get(id);
+        if (record == null) {
+            return;
         }
+        hideRecord(record);
+        mWindows.remove(id);
+        mUpdateQueue.discard(id);
+        mSnapSolver.removeRect(id);
+    }
+
+    /**
+     * 添加悬浮窗
+     *
+     * @return 悬浮窗id
+     */
+    public int addView(View view, WindowManager.LayoutParams params) {
+        int id = register(view, params);
+        show(id);
+        return id;
     }
 
     /**
      * 移除悬浮窗
      */
     public void removeView(View view) {
+        WindowRecord record = findRecord(view);
+        if (record != null) {
+            unregister(record.id);
+            return;
+        }
         if (!view.isAttachedToWindow()) {
             return;
         }
         try {
             mWindowManager.removeView(view);
         } catch (Exception e) {
-            e.printStackTrace();
+            mMetrics.onException(NO_ID, AnyWindowMetrics.OP_REMOVE, e);
         }
     }
 
@@ -90,13 +229,321 @@ public class AnyWindowManager {
      * 更新悬浮窗
      */
     public void updateView(View view, WindowManager.LayoutParams params) {
+        WindowRecord record = findRecord(view);
+        if (record != null && record.params.get() == params) {
+            // 外部可能直接修改了params，无法确定哪些属性变化了
+            record.params.markDirty(WindowParams.DIRTY_ALL);
+            updateRecord(record);
+            return;
+        }
         if (!view.isAttachedToWindow()) {
             return;
         }
         try {
             mWindowManager.updateViewLayout(view, params);
         } catch (Exception e) {
-            e.printStackTrace();
+            mMetrics.onException(NO_ID, AnyWindowMetrics.OP_UPDATE, e);
+        }
+    }
+
+    /**
+     * 显示已登记的悬浮窗
+     *
+     * @return 是否已添加到WindowManager，未登记或添加失败时为false
+     */
+    public boolean show(int id) {
+        WindowRecord record = mWindows.get(id);
+        return record != null && showRecord(record);
+    }
+
+    /**
+     * 隐藏已登记的悬浮窗，仍保留登记
+     */
+    public void hide(int id) {
+        WindowRecord record = mWindows.get(id);
+        if (record != null) {
+            hideRecord(record);
+        }
+    }
+
+    /**
+     * 移动已登记的悬浮窗
+     */
+    public void move(int id, int x, int y) {
+        WindowRecord record = mWindows.get(id);
+        if (record != null) {
+            setRecordLocation(record, x, y);
+            updateRecord(record);
+        }
+    }
+
+    /**
+     * 按当前参数更新已登记的悬浮窗
+     */
+    public void update(int id) {
+        WindowRecord record = mWindows.get(id);
+        if (record != null) {
+            updateRecord(record);
+        }
+    }
+
+    /**
+     * 从任意线程提交位置更新，同一帧内只保留最后一次的值
+     * 未登记或已取消登记的id提交的更新会被丢弃
+     */
+    @AnyThread
+    public void postLocation(int id, int x, int y) {
+        mUpdateQueue.postLocation(id, x, y);
+    }
+
+    /**
+     * 从任意线程提交大小更新，同一帧内只保留最后一次的值
+     */
+    @AnyThread
+    public void postSize(int id, int width, int height) {
+        mUpdateQueue.postSize(id, width, height);
+    }
+
+    /**
+     * 从任意线程提交透明度更新，同一帧内只保留最后一次的值
+     */
+    @AnyThread
+    public void postAlpha(int id, float alpha) {
+        mUpdateQueue.postAlpha(id, alpha);
+    }
+
+    /**
+     * 吸附时悬浮窗之间保留的间距，对同一个WindowManager下的所有manager生效
+     */
+    public void setSnapSpacing(int spacing) {
+        mSnapSolver.setSpacing(spacing);
+    }
+
+    /**
+     * 记录悬浮窗静止时占用的区域，供其他悬浮窗吸附时避让
+     */
+    public void setWindowBounds(int id, int left, int top, int right, int bottom) {
+        if (mWindows.get(id) == null) {
+            return;
+        }
+        mSnapSolver.setRect(id, left, top, right, bottom);
+    }
+
+    /**
+     * 为悬浮窗的吸附目标寻找不与其他悬浮窗重叠、且离y最近的位置
+     *
+     * @return 可用的y，限制在[minY,maxY]内
+     */
+    public int resolveSnapY(int id, int x, int y, int width, int height, int minY, int maxY) {
+        return mSnapSolver.resolveY(id, x, y, width, height, minY, maxY);
+    }
+
+    /**
+     * 开始一组批量操作，调用{@link Batch#apply()}后在下一帧内一次执行完
+     */
+    @NonNull
+    public Batch beginBatch() {
+        return new Batch();
+    }
+
+    /**
+     * 悬浮窗所在线程的looper，默认为主线程
+     */
+    @NonNull
+    public Looper getLooper() {
+        return mLooper;
+    }
+
+    public boolean isRegistered(int id) {
+        return mWindows.get(id) != null;
+    }
+
+    /**
+     * 已登记且已添加到窗口
+     */
+    public boolean isAttached(int id) {
+        WindowRecord record = mWindows.get(id);
+        return record != null && record.view.isAttachedToWindow();
+    }
+
+    public int getWindowCount() {
+        return mWindows.size();
+    }
+
+    /**
+     * 登记的所有悬浮窗id
+     */
+    @NonNull
+    public int[] getWindowIds() {
+        int[] ids = new int[mWindows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mWindows.keyAt(i);
+        }
+        return ids;
+    }
+
+    /**
+     * 单个悬浮窗执行updateViewLayout的次数
+     */
+    public long getUpdateCount(int id) {
+        WindowRecord record = mWindows.get(id);
+        return record == null ? 0L : record.updateCount;
+    }
+
+    /**
+     * 所有悬浮窗执行updateViewLayout的总次数
+     */
+    public long getTotalUpdateCount() {
+        return mTotalUpdateCount;
+    }
+
+    /**
+     * 单个悬浮窗因参数未变化而跳过updateViewLayout的次数
+     */
+    public long getSkippedUpdateCount(int id) {
+        WindowRecord record = mWindows.get(id);
+        return record == null ? 0L : record.skippedUpdateCount;
+    }
+
+    /**
+     * 所有悬浮窗因参数未变化而跳过updateViewLayout的总次数
+     */
+    public long getTotalSkippedUpdateCount() {
+        return mTotalSkippedUpdateCount;
+    }
+
+    /**
+     * 未登记的view调用{@link #removeView(View)}和{@link #updateView(View, WindowManager.LayoutParams)}时的统计
+     */
+    @NonNull
+    public AnyWindowMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 单个悬浮窗的统计，未登记时返回null
+     */
+    @Nullable
+    public AnyWindowMetrics getMetrics(int id) {
+        WindowRecord record = mWindows.get(id);
+        return record == null ? null : record.metrics;
+    }
+
+    @Nullable
+    private WindowRecord findRecord(View view) {
+        for (int i = 0; i < mWindows.size(); i++) {
+            WindowRecord record = mWindows.valueAt(i);
+            if (record.view == view) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private boolean showRecord(WindowRecord record) {
+        if (record.view.isAttachedToWindow()) {
+            return true;
+        }
+        try {
+            mWindowManager.addView(record.view, record.params.get());
+            record.params.clearDirty();
+            return true;
+        } catch (Exception e) {
+            record.metrics.onException(record.id, AnyWindowMetrics.OP_ADD, e);
+            return false;
+        }
+    }
+
+    private void hideRecord(WindowRecord record) {
+        hideRecord(record, false);
+    }
+
+    private void hideRecord(WindowRecord record, boolean immediate) {
+        if (!record.view.isAttachedToWindow()) {
+            return;
+        }
+        try {
+            if (immediate) {
+                mWindowManager.removeViewImmediate(record.view);
+            } else {
+                mWindowManager.removeView(record.view);
+            }
+        } catch (Exception e) {
+            record.metrics.onException(record.id, AnyWindowMetrics.OP_REMOVE, e);
+        }
+    }
+
+    private void setRecordLocation(WindowRecord record, int x, int y) {
+        if (record.callback != null) {
+            record.callback.onMove(x, y);
+        } else {
+            record.params.setLocation(x, y);
+        }
+    }
+
+    private void setRecordSize(WindowRecord record, int width, int height) {
+        if (record.callback != null) {
+            record.callback.onResize(width, height);
+        } else {
+            record.params.setSize(width, height);
+        }
+    }
+
+    /**
+     * 暂停期间{@link #move(int, int, int)}、{@link #postLocation(int, int, int)}、
+     * {@link Batch#apply()}等更新只修改params，恢复时合并为一次updateViewLayout
+     */
+    void setPaused(int id, boolean paused) {
+        WindowRecord record = mWindows.get(id);
+        if (record == null || record.paused == paused) {
+            return;
+        }
+        record.paused = paused;
+        if (!paused) {
+            updateRecord(record);
+        }
+    }
+
+    private void updateRecord(WindowRecord record) {
+        if (!record.view.isAttachedToWindow() || record.paused) {
+            return;
+        }
+        if (!record.params.isDirty()) {
+            record.skippedUpdateCount++;
+            mTotalSkippedUpdateCount++;
+            return;
+        }
+        try {
+            mWindowManager.updateViewLayout(record.view, record.params.get());
+            record.params.clearDirty();
+            record.updateCount++;
+            mTotalUpdateCount++;
+            record.metrics.onUpdateIssued(record.id);
+        } catch (Exception e) {
+            record.metrics.onException(record.id, AnyWindowMetrics.OP_UPDATE, e);
+        }
+    }
+
+    /**
+     * 该manager下所有悬浮窗共用的屏幕尺寸信息
+     */
+    @NonNull
+    public DisplayGeometry getDisplayGeometry(@NonNull Context context) {
+        if (mDisplayGeometry == null) {
+            mDisplayGeometry = DisplayGeometry.get(context);
+        }
+        return mDisplayGeometry;
+    }
+
+    /**
+     * 屏幕刷新率
+     */
+    float getRefreshRate() {
+        try {
+            return mWindowManager.getDefaultDisplay().getRefreshRate();
+        } catch (Exception e) {
+            Log.w("AnyWindow", "failed to read refresh rate", e);
+            return 0F;
         }
     }
 
@@ -104,7 +551,7 @@ public class AnyWindowManager {
      * 从当前上下文获取Activity
      */
     @Nullable
-    private static Activity getActivity(Context context) {
+    static Activity getActivity(Context context) {
         if (context instanceof Activity) {
             return (Activity) context;
         }
@@ -117,4 +564,108 @@ public class AnyWindowManager {
         return null;
     }
 
+    /**
+     * 批量操作，所有操作在同一帧内执行
+     */
+    public final class Batch implements Choreographer.FrameCallback {
+
+        private static final int OP_SHOW = 1;
+        private static final int OP_HIDE = 2;
+        private static final int OP_MOVE = 3;
+
+        private int[] mOps = new int[8];
+        private int[] mIds = new int[8];
+        private int[] mXs = new int[8];
+        private int[] mYs = new int[8];
+        private int mCount = 0;
+        private boolean mApplied = false;
+
+        private Batch() {
+        }
+
+        public Batch show(int... ids) {
+            for (int id : ids) {
+                add(OP_SHOW, id, 0, 0);
+            }
+            return this;
+        }
+
+        public Batch hide(int... ids) {
+            for (int id : ids) {
+                add(OP_HIDE, id, 0, 0);
+            }
+            return this;
+        }
+
+        public Batch move(int id, int x, int y) {
+            add(OP_MOVE, id, x, y);
+            return this;
+        }
+
+        /**
+         * 在下一帧执行所有操作，每个批次只能提交一次
+         * 可在任意线程调用，帧回调总是注册到manager所在线程的Choreographer
+         */
+        @AnyThread
+        public void apply() {
+            if (mApplied) {
+                throw new IllegalStateException("Batch already applied");
+            }
+            mApplied = true;
+            if (Looper.myLooper() == mLooper) {
+                Choreographer.getInstance().postFrameCallback(this);
+                return;
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Choreographer.getInstance().postFrameCallback(Batch.this);
+                }
+            });
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            for (int i = 0; i < mCount; i++) {
+                WindowRecord record = mWindows.get(mIds[i]);
+                if (record == null) {
+                    continue;
+                }
+                switch (mOps[i]) {
+                    case OP_SHOW:
+                        showRecord(record);
+                        break;
+                    case OP_HIDE:
+                        hideRecord(record);
+                        break;
+                    case OP_MOVE:
+                        setRecordLocation(record, mXs[i], mYs[i]);
+                        updateRecord(record);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            mCount = 0;
+        }
+
+        private void add(int op, int id, int x, int y) {
+            if (mApplied) {
+                throw new IllegalStateException("Batch already applied");
+            }
+            if (mCount == mOps.length) {
+                int size = mCount * 2;
+                mOps = Arrays.copyOf(mOps, size);
+                mIds = Arrays.copyOf(mIds, size);
+                mXs = Arrays.copyOf(mXs, size);
+                mYs = Arrays.copyOf(mYs, size);
+            }
+            mOps[mCount] = op;
+            mIds[mCount] = id;
+            mXs[mCount] = x;
+            mYs[mCount] = y;
+            mCount++;
+        }
+    }
+
 }
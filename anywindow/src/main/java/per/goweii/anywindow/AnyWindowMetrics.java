@@ -0,0 +1,266 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 描述：单个悬浮窗的运行统计
+ * 只在悬浮窗所在线程（manager的looper线程）写入，可在任意线程读取。计数和直方图都是无锁的，记录时不产生对象分配，可在线上常开。
+ */
+public final class AnyWindowMetrics {
+
+    public static final int OP_ADD = 1;
+    public static final int OP_REMOVE = 2;
+    public static final int OP_UPDATE = 3;
+
+    private static final String TAG = "AnyWindow";
+
+    private final AtomicLong mTouchEventCount = new AtomicLong();
+    private final AtomicLong mUpdateIssuedCount = new AtomicLong();
+    private final AtomicLong mUpdateFailedCount = new AtomicLong();
+    private final AtomicLong mAddFailedCount = new AtomicLong();
+    private final AtomicLong mRemoveFailedCount = new AtomicLong();
+    private final AtomicLong mFlingFrameCount = new AtomicLong();
+    private final AtomicLong mFlingDroppedFrameCount = new AtomicLong();
+    private final Histogram mDragLatency = new Histogram();
+    private final Histogram mFlingDuration = new Histogram();
+
+    private volatile Listener mListener = null;
+    private long mDragStartNanos = 0L;
+
+    /**
+     * 监听异常和关键耗时，回调在悬浮窗所在线程
+     */
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 收到的触摸事件数
+     */
+    public long getTouchEventCount() {
+        return mTouchEventCount.get();
+    }
+
+    /**
+     * 成功执行updateViewLayout的次数
+     */
+    public long getUpdateIssuedCount() {
+        return mUpdateIssuedCount.get();
+    }
+
+    /**
+     * updateViewLayout抛出异常的次数
+     */
+    public long getUpdateFailedCount() {
+        return mUpdateFailedCount.get();
+    }
+
+    /**
+     * addView抛出异常的次数
+     */
+    public long getAddFailedCount() {
+        return mAddFailedCount.get();
+    }
+
+    /**
+     * removeView抛出异常的次数
+     */
+    public long getRemoveFailedCount() {
+        return mRemoveFailedCount.get();
+    }
+
+    /**
+     * 所有松手动画的总帧数
+     */
+    public long getFlingFrameCount() {
+        return mFlingFrameCount.get();
+    }
+
+    /**
+     * 所有松手动画的总掉帧数
+     */
+    public long getFlingDroppedFrameCount() {
+        return mFlingDroppedFrameCount.get();
+    }
+
+    /**
+     * 从开始拖拽到第一次updateViewLayout完成的耗时，微秒
+     */
+    @NonNull
+    public Histogram getDragLatency() {
+        return mDragLatency;
+    }
+
+    /**
+     * 松手动画的时长，微秒
+     */
+    @NonNull
+    public Histogram getFlingDuration() {
+        return mFlingDuration;
+    }
+
+    public void reset() {
+        mTouchEventCount.set(0L);
+        mUpdateIssuedCount.set(0L);
+        mUpdateFailedCount.set(0L);
+        mAddFailedCount.set(0L);
+        mRemoveFailedCount.set(0L);
+        mFlingFrameCount.set(0L);
+        mFlingDroppedFrameCount.set(0L);
+        mDragLatency.reset();
+        mFlingDuration.reset();
+    }
+
+    void onTouchEvent() {
+        mTouchEventCount.incrementAndGet();
+    }
+
+    void onDragStart() {
+        mDragStartNanos = System.nanoTime();
+    }
+
+    void onUpdateIssued(int windowId) {
+        mUpdateIssuedCount.incrementAndGet();
+        if (mDragStartNanos == 0L) {
+            return;
+        }
+        long latencyNanos = System.nanoTime() - mDragStartNanos;
+        mDragStartNanos = 0L;
+        mDragLatency.record(latencyNanos / 1000L);
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onDragLatency(windowId, latencyNanos);
+        }
+    }
+
+    void onFlingEnd(int windowId, @NonNull FlingStats stats) {
+        mFlingFrameCount.addAndGet(stats.getFrameCount());
+        mFlingDroppedFrameCount.addAndGet(stats.getDroppedFrameCount());
+        mFlingDuration.record(stats.getDurationMillis() * 1000L);
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onFlingEnd(windowId, stats);
+        }
+    }
+
+    void onException(int windowId, int operation, @NonNull Exception e) {
+        switch (operation) {
+            case OP_ADD:
+                mAddFailedCount.incrementAndGet();
+                break;
+            case OP_REMOVE:
+                mRemoveFailedCount.incrementAndGet();
+                break;
+            case OP_UPDATE:
+                mUpdateFailedCount.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onException(windowId, operation, e);
+        } else {
+            Log.w(TAG, "window " + windowId + " operation " + operation + " failed", e);
+        }
+    }
+
+    public interface Listener {
+        /**
+         * WindowManager操作抛出异常，设置监听后不再输出到logcat
+         *
+         * @param operation {@link #OP_ADD}、{@link #OP_REMOVE}或{@link #OP_UPDATE}
+         */
+        void onException(int windowId, int operation, @NonNull Exception e);
+
+        void onDragLatency(int windowId, long latencyNanos);
+
+        void onFlingEnd(int windowId, @NonNull FlingStats stats);
+    }
+
+    /**
+     * 按2的幂分桶的直方图，第i个桶记录[2^(i-1), 2^i)的值，第0个桶记录0
+     */
+    public static final class Histogram {
+
+        private static final int BUCKET_COUNT = 40;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0L) {
+                value = 0L;
+            }
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value));
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public float getAverage() {
+            long count = mCount.get();
+            return count == 0L ? 0F : (float) mSum.get() / count;
+        }
+
+        /**
+         * @param percentile 0~100
+         * @return 所在桶的上界，没有记录时为0
+         */
+        public long getPercentile(float percentile) {
+            long count = mCount.get();
+            if (count == 0L) {
+                return 0L;
+            }
+            long target = (long) Math.ceil(count * Math.max(0F, Math.min(100F, percentile)) / 100F);
+            target = Math.max(1L, target);
+            long seen = 0L;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= target) {
+                    return Math.min(mMax.get(), i == 0 ? 0L : (1L << i) - 1L);
+                }
+            }
+            return mMax.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0L);
+            }
+            mCount.set(0L);
+            mSum.set(0L);
+            mMax.set(0L);
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram{" +
+                    "count=" + getCount() +
+                    ", avg=" + getAverage() +
+                    ", p50=" + getPercentile(50F) +
+                    ", p99=" + getPercentile(99F) +
+                    ", max=" + getMax() +
+                    '}';
+        }
+    }
+}
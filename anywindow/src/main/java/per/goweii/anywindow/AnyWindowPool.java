@@ -0,0 +1,128 @@
+package per.goweii.anywindow;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 描述：悬浮窗复用池
+ * 保留已隐藏悬浮窗的view、手势状态和窗口参数，再次显示时无需重新inflate。
+ * 超过数量上限时淘汰最久未使用的，超过空闲时长的在下次访问时淘汰。
+ * 悬浮窗持有创建时的Context，池的生命周期不应超过该Context。
+ */
+public final class AnyWindowPool {
+
+    private final int mMaxSize;
+    private final long mMaxIdleMillis;
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    private long mHitCount = 0L;
+    private long mMissCount = 0L;
+    private long mEvictCount = 0L;
+
+    /**
+     * @param maxSize       最多保留的悬浮窗个数
+     * @param maxIdleMillis 悬浮窗回收后最长保留时间，小于等于0表示不限制
+     */
+    public AnyWindowPool(int maxSize, long maxIdleMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxSize = maxSize;
+        mMaxIdleMillis = maxIdleMillis;
+        mEntries = new LinkedHashMap<>(maxSize, 0.75F, true);
+    }
+
+    /**
+     * 取出一个悬浮窗，没有时返回null，需自行创建
+     */
+    @Nullable
+    public AnyWindow acquire(@NonNull String key) {
+        evictExpired();
+        Entry entry = mEntries.remove(key);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.window;
+    }
+
+    /**
+     * 隐藏悬浮窗并放入池中
+     */
+    public void release(@NonNull String key, @NonNull AnyWindow window) {
+        window.dismiss();
+        Entry old = mEntries.put(key, new Entry(window, SystemClock.uptimeMillis()));
+        if (old != null && old.window != window) {
+            mEvictCount++;
+        }
+        evictExpired();
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * 淘汰最久未使用的悬浮窗，直到数量不超过maxSize
+     */
+    public void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mEntries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            mEvictCount++;
+        }
+    }
+
+    /**
+     * 淘汰超过空闲时长的悬浮窗
+     */
+    public void evictExpired() {
+        if (mMaxIdleMillis <= 0L) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (now - entry.releaseTime >= mMaxIdleMillis) {
+                iterator.remove();
+                mEvictCount++;
+            }
+        }
+    }
+
+    public void clear() {
+        mEvictCount += mEntries.size();
+        mEntries.clear();
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public long getEvictCount() {
+        return mEvictCount;
+    }
+
+    private static final class Entry {
+        final AnyWindow window;
+        final long releaseTime;
+
+        Entry(AnyWindow window, long releaseTime) {
+            this.window = window;
+            this.releaseTime = releaseTime;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * 描述：悬浮窗拖拽过程的追踪
+ * 默认不设置监听，此时追踪调用不会产生任何对象分配。
+ * 将{@link #ENABLED}改为false后，所有追踪代码会在编译期被移除。
+ */
+public final class AnyWindowTracer {
+
+    /**
+     * 编译期开关
+     */
+    public static final boolean ENABLED = true;
+
+    private static volatile OnTraceListener sListener = null;
+
+    private AnyWindowTracer() {
+    }
+
+    /**
+     * 设置追踪监听，传null关闭追踪
+     */
+    public static void setListener(@Nullable OnTraceListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * 是否设置了监听，需要额外计算才能得到的追踪参数先用它判断
+     */
+    static boolean hasListener() {
+        return sListener != null;
+    }
+
+    static void down(AnyWindow window) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onDown(window);
+        }
+    }
+
+    static void up(AnyWindow window) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onUp(window);
+        }
+    }
+
+    static void dragStart(AnyWindow window, float x, float y) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onDragStart(window, x, y);
+        }
+    }
+
+    static void dragging(AnyWindow window, float moveX, float moveY) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onDragging(window, moveX, moveY);
+        }
+    }
+
+    static void dragEnd(AnyWindow window, float velocityX, float velocityY, float degrees) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onDragEnd(window, velocityX, velocityY, degrees);
+        }
+    }
+
+    static void flingStart(AnyWindow window, float startX, float startY, float endX, float endY) {
+        OnTraceListener listener = sListener;
+        if (listener != null) {
+            listener.onFlingStart(window, startX, startY, endX, endY);
+        }
+    }
+
+    public interface OnTraceListener {
+        void onDown(@NonNull AnyWindow window);
+
+        void onUp(@NonNull AnyWindow window);
+
+        void onDragStart(@NonNull AnyWindow window, float x, float y);
+
+        void onDragging(@NonNull AnyWindow window, float moveX, float moveY);
+
+        void onDragEnd(@NonNull AnyWindow window, float velocityX, float velocityY, float degrees);
+
+        void onFlingStart(@NonNull AnyWindow window, float startX, float startY, float endX, float endY);
+    }
+
+    /**
+     * 输出到logcat，仅用于调试
+     */
+    public static class LogTraceListener implements OnTraceListener {
+
+        private static final String TAG = "AnyWindow";
+
+        @Override
+        public void onDown(@NonNull AnyWindow window) {
+            Log.d(TAG, "onDown");
+        }
+
+        @Override
+        public void onUp(@NonNull AnyWindow window) {
+            Log.d(TAG, "onUp");
+        }
+
+        @Override
+        public void onDragStart(@NonNull AnyWindow window, float x, float y) {
+            Log.d(TAG, "onDragStart[" + x + "," + y + "]");
+        }
+
+        @Override
+        public void onDragging(@NonNull AnyWindow window, float moveX, float moveY) {
+            Log.d(TAG, "onDragging[" + moveX + "," + moveY + "]");
+        }
+
+        @Override
+        public void onDragEnd(@NonNull AnyWindow window, float velocityX, float velocityY, float degrees) {
+            Log.d(TAG, "onDragEnd[" + velocityX + "," + velocityY + "] degrees=" + degrees);
+        }
+
+        @Override
+        public void onFlingStart(@NonNull AnyWindow window, float startX, float startY, float endX, float endY) {
+            Log.d(TAG, "onFlingStart start[" + startX + "," + startY + "] end[" + endX + "," + endY + "]");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package per.goweii.anywindow;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.view.Display;
+import android.view.DisplayCutout;
+import android.view.View;
+import android.view.WindowInsets;
+import android.view.WindowManager;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 描述：默认屏幕的尺寸、状态栏、导航栏和刘海信息缓存
+ * 进程内共享一份，屏幕旋转、分屏或显示设备变化后失效，下次读取时重新计算。
+ * 读取不会产生对象分配，返回的Rect不可修改。重新计算时加锁，可在主线程和悬浮窗线程读取。
+ * 失效时通知{@link OnChangeListener}，已显示的悬浮窗据此校正位置。
+ */
+public final class DisplayGeometry {
+
+    private static DisplayGeometry sInstance = null;
+
+    private final Context mContext;
+    private final Display mDisplay;
+    private final Point mRealSize = new Point();
+    private final Point mSize = new Point();
+    private final Rect mCutoutInsets = new Rect();
+    private final Rect mFenceRect = new Rect();
+    private final Rect mLastFenceRect = new Rect();
+    private final Point mLastSize = new Point();
+    private final CopyOnWriteArrayList<OnChangeListener> mListeners = new CopyOnWriteArrayList<>();
+
+    private int mStatusBarHeight = 0;
+    private int mNavigationBarHeight = 0;
+    private int mVersion = 0;
+    private volatile boolean mValid = false;
+
+    @NonNull
+    public static synchronized DisplayGeometry get(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new DisplayGeometry(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * 丢弃共享的实例，下次{@link #get(Context)}时按新的上下文重新创建
+     */
+    @VisibleForTesting
+    static synchronized void clearInstance() {
+        sInstance = null;
+    }
+
+    private DisplayGeometry(Context context) {
+        mContext = context;
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        mDisplay = windowManager.getDefaultDisplay();
+        mContext.registerComponentCallbacks(new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                invalidate();
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+        DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        if (displayManager != null) {
+            displayManager.registerDisplayListener(new DisplayManager.DisplayListener() {
+                @Override
+                public void onDisplayAdded(int displayId) {
+                }
+
+                @Override
+                public void onDisplayRemoved(int displayId) {
+                }
+
+                @Override
+                public void onDisplayChanged(int displayId) {
+                    if (displayId == mDisplay.getDisplayId()) {
+                        invalidate();
+                    }
+                }
+            }, new Handler(Looper.getMainLooper()));
+        }
+    }
+
+    /**
+     * 标记失效，下次读取时重新计算，并通知所有监听
+     */
+    public void invalidate() {
+        mValid = false;
+        for (OnChangeListener listener : mListeners) {
+            listener.onGeometryInvalidated(this);
+        }
+    }
+
+    /**
+     * 监听在调用invalidate的线程回调，可能是主线程或悬浮窗线程
+     */
+    public void addOnChangeListener(@NonNull OnChangeListener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeOnChangeListener(@NonNull OnChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 屏幕尺寸或可移动区域变化后加1，可用于判断缓存的位置是否需要重新校正
+     */
+    public int getVersion() {
+        ensureValid();
+        return mVersion;
+    }
+
+    /**
+     * 屏幕物理尺寸宽度，包含导航栏
+     */
+    public int getScreenWidth() {
+        ensureValid();
+        return mRealSize.x;
+    }
+
+    public int getScreenHeight() {
+        ensureValid();
+        return mRealSize.y;
+    }
+
+    public int getStatusBarHeight() {
+        ensureValid();
+        return mStatusBarHeight;
+    }
+
+    /**
+     * 导航栏在屏幕上占用的尺寸，没有导航栏时为0
+     */
+    public int getNavigationBarHeight() {
+        ensureValid();
+        return mNavigationBarHeight;
+    }
+
+    /**
+     * 刘海区域的安全边距
+     */
+    @NonNull
+    public Rect getCutoutInsets() {
+        ensureValid();
+        return mCutoutInsets;
+    }
+
+    /**
+     * 悬浮窗可移动的区域：去掉状态栏、导航栏和刘海后的应用显示区域
+     */
+    @NonNull
+    public Rect getFenceRect() {
+        ensureValid();
+        return mFenceRect;
+    }
+
+    /**
+     * 从已添加到窗口的view读取刘海信息
+     */
+    void applyWindowInsets(@NonNull View view) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return;
+        }
+        applyCutout(view);
+    }
+
+    @TargetApi(Build.VERSION_CODES.P)
+    private void applyCutout(View view) {
+        WindowInsets insets = view.getRootWindowInsets();
+        if (insets == null) {
+            return;
+        }
+        DisplayCutout cutout = insets.getDisplayCutout();
+        int left = cutout == null ? 0 : cutout.getSafeInsetLeft();
+        int top = cutout == null ? 0 : cutout.getSafeInsetTop();
+        int right = cutout == null ? 0 : cutout.getSafeInsetRight();
+        int bottom = cutout == null ? 0 : cutout.getSafeInsetBottom();
+        if (mCutoutInsets.left != left || mCutoutInsets.top != top
+                || mCutoutInsets.right != right || mCutoutInsets.bottom != bottom) {
+            mCutoutInsets.set(left, top, right, bottom);
+            invalidate();
+        }
+    }
+
+    private void ensureValid() {
+        if (mValid) {
+            return;
+        }
+        synchronized (this) {
+            if (mValid) {
+                return;
+            }
+            recompute();
+            mValid = true;
+        }
+    }
+
+    private void recompute() {
+        mDisplay.getRealSize(mRealSize);
+        mDisplay.getSize(mSize);
+        if (mRealSize.y > mSize.y) {
+            mNavigationBarHeight = mRealSize.y - mSize.y;
+        } else if (mRealSize.x > mSize.x) {
+            mNavigationBarHeight = mRealSize.x - mSize.x;
+        } else {
+            mNavigationBarHeight = 0;
+        }
+        mStatusBarHeight = 0;
+        Resources resources = mContext.getResources();
+        int resId = resources.getIdentifier("status_bar_height", "dimen", "android");
+        if (resId > 0) {
+            mStatusBarHeight = resources.getDimensionPixelSize(resId);
+        }
+        mFenceRect.set(mCutoutInsets.left, Math.max(mCutoutInsets.top, mStatusBarHeight),
+                mSize.x - mCutoutInsets.right, mSize.y - mCutoutInsets.bottom);
+        if (!mFenceRect.equals(mLastFenceRect) || !mSize.equals(mLastSize)) {
+            mLastFenceRect.set(mFenceRect);
+            mLastSize.set(mSize.x, mSize.y);
+            mVersion++;
+        }
+    }
+
+    public interface OnChangeListener {
+        /**
+         * 只表示缓存失效，尺寸不一定变化，需比较{@link #getVersion()}
+         */
+        void onGeometryInvalidated(@NonNull DisplayGeometry geometry);
+    }
+}
@@ -0,0 +1,157 @@
+package per.goweii.anywindow;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+
+/**
+ * 描述：悬浮窗专用的拖拽手势识别
+ * 只识别按下、拖拽、松手、点击和长按。与GestureDetector不同，
+ * 只有开启长按时才会在按下时发送延时消息，其余情况下处理事件不经过Handler。
+ */
+final class DragGestureDetector {
+
+    private final Callback mCallback;
+    private final int mTouchSlopSquare;
+    private Handler mHandler = null;
+
+    private boolean mLongPressEnabled = false;
+    private boolean mTracking = false;
+    private boolean mDragging = false;
+    private boolean mLongPressed = false;
+    private float mDownX = 0F;
+    private float mDownY = 0F;
+
+    private long mPostedMessageCount = 0L;
+
+    private final Runnable mLongPressAction = new Runnable() {
+        @Override
+        public void run() {
+            if (!mTracking || mDragging) {
+                return;
+            }
+            mLongPressed = true;
+            mCallback.onLongPress();
+        }
+    };
+
+    DragGestureDetector(@NonNull Context context, @NonNull Callback callback) {
+        mCallback = callback;
+        int touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mTouchSlopSquare = touchSlop * touchSlop;
+    }
+
+    /**
+     * 开启后每次按下会发送一条长按延时消息，默认关闭
+     */
+    void setLongPressEnabled(boolean enabled) {
+        mLongPressEnabled = enabled;
+        if (!enabled) {
+            cancelLongPress();
+        }
+    }
+
+    /**
+     * 发送到Handler的消息数
+     */
+    long getPostedMessageCount() {
+        return mPostedMessageCount;
+    }
+
+    boolean isDragging() {
+        return mDragging;
+    }
+
+    boolean onTouchEvent(@NonNull MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mTracking = true;
+                mDragging = false;
+                mLongPressed = false;
+                mDownX = event.getRawX();
+                mDownY = event.getRawY();
+                if (mLongPressEnabled) {
+                    postLongPress(event.getDownTime());
+                }
+                mCallback.onDown(event);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (!mTracking || mLongPressed) {
+                    return false;
+                }
+                if (!mDragging) {
+                    float dx = event.getRawX() - mDownX;
+                    float dy = event.getRawY() - mDownY;
+                    if (dx * dx + dy * dy <= mTouchSlopSquare) {
+                        return true;
+                    }
+                    mDragging = true;
+                    cancelLongPress();
+                }
+                mCallback.onDrag(event);
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (!mTracking) {
+                    return false;
+                }
+                mTracking = false;
+                cancelLongPress();
+                if (mDragging) {
+                    mDragging = false;
+                    mCallback.onRelease(event);
+                } else if (!mLongPressed) {
+                    mCallback.onTap(event);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (!mTracking) {
+                    return false;
+                }
+                mTracking = false;
+                cancelLongPress();
+                if (mDragging) {
+                    mDragging = false;
+                    mCallback.onRelease(event);
+                }
+                return true;
+            default:
+                return mTracking;
+        }
+    }
+
+    private void postLongPress(long downTime) {
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.myLooper());
+        }
+        mHandler.removeCallbacks(mLongPressAction);
+        mHandler.postAtTime(mLongPressAction, downTime + ViewConfiguration.getLongPressTimeout());
+        mPostedMessageCount++;
+    }
+
+    private void cancelLongPress() {
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mLongPressAction);
+        }
+    }
+
+    interface Callback {
+        void onDown(@NonNull MotionEvent e);
+
+        /**
+         * 移动超过touch slop后的每个移动事件
+         */
+        void onDrag(@NonNull MotionEvent e);
+
+        /**
+         * 拖拽后松手或取消
+         */
+        void onRelease(@NonNull MotionEvent e);
+
+        void onTap(@NonNull MotionEvent e);
+
+        void onLongPress();
+    }
+}
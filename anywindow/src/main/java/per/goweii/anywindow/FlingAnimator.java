@@ -0,0 +1,146 @@
+package per.goweii.anywindow;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+/**
+ * 描述：由Choreographer驱动的松手动画
+ * 只在动画进行中注册帧回调，结束或取消后不再占用任何帧。
+ * 只能在悬浮窗所在线程启动和取消，其他线程调用会抛出异常。
+ */
+final class FlingAnimator implements Choreographer.FrameCallback {
+
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60L;
+
+    private final Looper mLooper;
+    private final Callback mCallback;
+    private final FlingStats mStats = new FlingStats();
+    private SnapEngine mEngine;
+    private Choreographer mChoreographer = null;
+
+    private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private long mLastFrameTimeNanos = 0L;
+    private boolean mRunning = false;
+    private float mTargetX = 0F;
+    private float mTargetY = 0F;
+
+    FlingAnimator(@NonNull Looper looper, @NonNull SnapEngine engine, @NonNull Callback callback) {
+        mLooper = looper;
+        mEngine = engine;
+        mCallback = callback;
+    }
+
+    void setEngine(@NonNull SnapEngine engine) {
+        cancel();
+        mEngine = engine;
+    }
+
+    /**
+     * 根据屏幕刷新率设置帧间隔，用于统计丢帧
+     */
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate > 0F) {
+            mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        } else {
+            mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+        }
+    }
+
+    void start(float startX, float startY,
+               float velocityX, float velocityY,
+               float targetX, float targetY) {
+        cancel();
+        long now = System.nanoTime();
+        mEngine.start(startX, startY, velocityX, velocityY, targetX, targetY, now / 1000000L);
+        mStats.reset(now);
+        mTargetX = targetX;
+        mTargetY = targetY;
+        mLastFrameTimeNanos = 0L;
+        mRunning = true;
+        getChoreographer().postFrameCallback(this);
+    }
+
+    /**
+     * 取消动画，窗口停在当前位置
+     */
+    void cancel() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        getChoreographer().removeFrameCallback(this);
+        mEngine.abort();
+        mStats.end(System.nanoTime(), false);
+        mCallback.onFlingEnd(mStats);
+    }
+
+    /**
+     * 立即结束动画，窗口直接停到目标位置
+     */
+    void finish() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        getChoreographer().removeFrameCallback(this);
+        mEngine.abort();
+        mCallback.onFlingFrame(mTargetX, mTargetY);
+        mStats.end(System.nanoTime(), true);
+        mCallback.onFlingEnd(mStats);
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    @NonNull
+    FlingStats getStats() {
+        return mStats;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        int dropped = 0;
+        if (mLastFrameTimeNanos > 0L) {
+            long interval = frameTimeNanos - mLastFrameTimeNanos;
+            if (interval * 2L > mFrameIntervalNanos * 3L) {
+                dropped = Math.round(interval / (float) mFrameIntervalNanos) - 1;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        boolean running = mEngine.step(frameTimeNanos / 1000000L);
+        mCallback.onFlingFrame(mEngine.getCurrX(), mEngine.getCurrY());
+        mStats.onFrame(System.nanoTime() - frameTimeNanos, dropped);
+        if (!mRunning) {
+            // 在回调中被取消
+            return;
+        }
+        if (running) {
+            getChoreographer().postFrameCallback(this);
+        } else {
+            mRunning = false;
+            mStats.end(frameTimeNanos, true);
+            mCallback.onFlingEnd(mStats);
+        }
+    }
+
+    private Choreographer getChoreographer() {
+        if (Looper.myLooper() != mLooper) {
+            throw new IllegalStateException("FlingAnimator must be used on the window thread");
+        }
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        return mChoreographer;
+    }
+
+    interface Callback {
+        void onFlingFrame(float x, float y);
+
+        void onFlingEnd(@NonNull FlingStats stats);
+    }
+}
@@ -0,0 +1,93 @@
+package per.goweii.anywindow;
+
+/**
+ * 描述：单次松手动画的帧统计
+ */
+public final class FlingStats {
+
+    private long mStartTimeNanos = 0L;
+    private long mEndTimeNanos = 0L;
+    private int mFrameCount = 0;
+    private int mDroppedFrameCount = 0;
+    private long mLatencySumNanos = 0L;
+    private long mMaxLatencyNanos = 0L;
+    private boolean mFinished = false;
+
+    FlingStats() {
+    }
+
+    void reset(long startTimeNanos) {
+        mStartTimeNanos = startTimeNanos;
+        mEndTimeNanos = startTimeNanos;
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mLatencySumNanos = 0L;
+        mMaxLatencyNanos = 0L;
+        mFinished = false;
+    }
+
+    void onFrame(long latencyNanos, int droppedFrames) {
+        mFrameCount++;
+        mDroppedFrameCount += droppedFrames;
+        mLatencySumNanos += latencyNanos;
+        if (latencyNanos > mMaxLatencyNanos) {
+            mMaxLatencyNanos = latencyNanos;
+        }
+    }
+
+    void end(long endTimeNanos, boolean finished) {
+        mEndTimeNanos = endTimeNanos;
+        mFinished = finished;
+    }
+
+    /**
+     * 动画执行的帧数
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * 相邻两帧间隔超过1.5倍刷新周期时，按跳过的刷新周期数计为丢帧
+     */
+    public int getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    public long getDurationMillis() {
+        return (mEndTimeNanos - mStartTimeNanos) / 1000000L;
+    }
+
+    /**
+     * 从vsync到本帧布局更新完成的平均耗时
+     */
+    public float getAverageLatencyMillis() {
+        if (mFrameCount == 0) {
+            return 0F;
+        }
+        return mLatencySumNanos / (float) mFrameCount / 1000000F;
+    }
+
+    public float getMaxLatencyMillis() {
+        return mMaxLatencyNanos / 1000000F;
+    }
+
+    /**
+     * 动画是正常结束还是被打断
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public String toString() {
+        return "FlingStats{" +
+                "frames=" + mFrameCount +
+                ", dropped=" + mDroppedFrameCount +
+                ", duration=" + getDurationMillis() + "ms" +
+                ", avgLatency=" + getAverageLatencyMillis() + "ms" +
+                ", maxLatency=" + getMaxLatencyMillis() + "ms" +
+                ", finished=" + mFinished +
+                '}';
+    }
+}
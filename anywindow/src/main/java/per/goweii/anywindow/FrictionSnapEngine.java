@@ -0,0 +1,114 @@
+package per.goweii.anywindow;
+
+/**
+ * 描述：摩擦模型
+ * 速度与剩余距离成正比地指数衰减，恰好停在目标位置。
+ * 松手速度越快衰减系数越大，快速甩动会更快到达，但不会低于设定的最小摩擦系数。
+ */
+public class FrictionSnapEngine implements SnapEngine {
+
+    public static final float DEFAULT_FRICTION = 8F;
+    public static final float DEFAULT_MAX_FRICTION = 30F;
+
+    private static final float REST_DISPLACEMENT = 0.5F;
+
+    private final float mFriction;
+    private final float mMaxFriction;
+
+    private float mTargetX = 0F;
+    private float mTargetY = 0F;
+    private float mDistanceX = 0F;
+    private float mDistanceY = 0F;
+    private float mDecayX = 0F;
+    private float mDecayY = 0F;
+    private float mCurrX = 0F;
+    private float mCurrY = 0F;
+    private long mStartTime = 0L;
+    private boolean mFinished = true;
+
+    public FrictionSnapEngine() {
+        this(DEFAULT_FRICTION, DEFAULT_MAX_FRICTION);
+    }
+
+    /**
+     * @param friction    最小衰减系数（1/秒），松手速度不足或方向相反时使用
+     * @param maxFriction 最大衰减系数（1/秒）
+     */
+    public FrictionSnapEngine(float friction, float maxFriction) {
+        if (friction <= 0F) {
+            throw new IllegalArgumentException("friction must be positive");
+        }
+        if (maxFriction < friction) {
+            throw new IllegalArgumentException("maxFriction must not be less than friction");
+        }
+        mFriction = friction;
+        mMaxFriction = maxFriction;
+    }
+
+    @Override
+    public void start(float startX, float startY,
+                      float velocityX, float velocityY,
+                      float targetX, float targetY,
+                      long startTimeMillis) {
+        mTargetX = targetX;
+        mTargetY = targetY;
+        mDistanceX = targetX - startX;
+        mDistanceY = targetY - startY;
+        mDecayX = decayOf(mDistanceX, velocityX);
+        mDecayY = decayOf(mDistanceY, velocityY);
+        mCurrX = startX;
+        mCurrY = startY;
+        mStartTime = startTimeMillis;
+        mFinished = false;
+    }
+
+    @Override
+    public boolean step(long timeMillis) {
+        if (mFinished) {
+            return false;
+        }
+        float t = Math.max(0L, timeMillis - mStartTime) / 1000F;
+        float remainX = mDistanceX * (float) Math.exp(-mDecayX * t);
+        float remainY = mDistanceY * (float) Math.exp(-mDecayY * t);
+        if (Math.abs(remainX) < REST_DISPLACEMENT && Math.abs(remainY) < REST_DISPLACEMENT) {
+            mCurrX = mTargetX;
+            mCurrY = mTargetY;
+            mFinished = true;
+            return false;
+        }
+        mCurrX = mTargetX - remainX;
+        mCurrY = mTargetY - remainY;
+        return true;
+    }
+
+    @Override
+    public float getCurrX() {
+        return mCurrX;
+    }
+
+    @Override
+    public float getCurrY() {
+        return mCurrY;
+    }
+
+    @Override
+    public void abort() {
+        mFinished = true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * x(t) = target - d * e^(-kt)，初速度为 k * d，因此 k = v / d
+     */
+    private float decayOf(float distance, float velocity) {
+        if (distance == 0F || velocity == 0F || Math.signum(distance) != Math.signum(velocity)) {
+            return mFriction;
+        }
+        float decay = velocity / distance;
+        return Math.max(mFriction, Math.min(mMaxFriction, decay));
+    }
+}
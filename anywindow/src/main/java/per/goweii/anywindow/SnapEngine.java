@@ -0,0 +1,43 @@
+package per.goweii.anywindow;
+
+/**
+ * 描述：拖拽松手后的吸附/惯性动画模型
+ * 由调用方传入时间驱动，不依赖系统时钟，可以在JVM中逐帧确定性地计算。
+ */
+public interface SnapEngine {
+
+    /**
+     * 开始一次动画
+     *
+     * @param startX          起始位置x
+     * @param startY          起始位置y
+     * @param velocityX       松手时的x速度（像素/秒）
+     * @param velocityY       松手时的y速度（像素/秒）
+     * @param targetX         目标位置x
+     * @param targetY         目标位置y
+     * @param startTimeMillis 开始时间
+     */
+    void start(float startX, float startY,
+               float velocityX, float velocityY,
+               float targetX, float targetY,
+               long startTimeMillis);
+
+    /**
+     * 计算指定时间的位置
+     *
+     * @param timeMillis 当前时间，与startTimeMillis使用同一时钟
+     * @return 动画是否仍在进行
+     */
+    boolean step(long timeMillis);
+
+    float getCurrX();
+
+    float getCurrY();
+
+    /**
+     * 停止动画，当前位置保持不变
+     */
+    void abort();
+
+    boolean isFinished();
+}
@@ -0,0 +1,169 @@
+package per.goweii.anywindow;
+
+import java.util.Arrays;
+
+/**
+ * 描述：多个悬浮窗吸附时的避让计算
+ * 以基本类型数组保存各悬浮窗的矩形，为吸附目标寻找与其他悬浮窗不重叠的最近位置。
+ * 候选位置为原位置和每个障碍物的上下两侧，计算量为O(n²)，几十个悬浮窗时可忽略。
+ * 只依赖基本类型，可以直接在JVM中测试。
+ * 同一个WindowManager下的manager共用一个实例，它们可能在不同线程，所有方法加锁。
+ */
+final class SnapLayoutSolver {
+
+    private int[] mIds = new int[8];
+    private int[] mLefts = new int[8];
+    private int[] mTops = new int[8];
+    private int[] mRights = new int[8];
+    private int[] mBottoms = new int[8];
+    private int mCount = 0;
+
+    /**
+     * 与目标在水平方向有重叠的障碍物，已按间距扩展
+     */
+    private int[] mObstacleTops = new int[8];
+    private int[] mObstacleBottoms = new int[8];
+
+    private int mSpacing = 0;
+
+    synchronized void setSpacing(int spacing) {
+        mSpacing = Math.max(0, spacing);
+    }
+
+    synchronized int getSpacing() {
+        return mSpacing;
+    }
+
+    synchronized void setRect(int id, int left, int top, int right, int bottom) {
+        int index = indexOf(id);
+        if (index < 0) {
+            ensureCapacity(mCount + 1);
+            index = mCount++;
+            mIds[index] = id;
+        }
+        mLefts[index] = left;
+        mTops[index] = top;
+        mRights[index] = right;
+        mBottoms[index] = bottom;
+    }
+
+    synchronized void removeRect(int id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return;
+        }
+        int last = mCount - 1;
+        mIds[index] = mIds[last];
+        mLefts[index] = mLefts[last];
+        mTops[index] = mTops[last];
+        mRights[index] = mRights[last];
+        mBottoms[index] = mBottoms[last];
+        mCount = last;
+    }
+
+    synchronized void clear() {
+        mCount = 0;
+    }
+
+    synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * 计算不与其他悬浮窗重叠、且离y最近的位置
+     *
+     * @param id     目标悬浮窗，不与自己比较
+     * @param x      目标位置x
+     * @param y      期望的位置y
+     * @param width  目标宽度
+     * @param height 目标高度
+     * @param minY   y的最小值
+     * @param maxY   y的最大值
+     * @return 找不到空位时返回限制在[minY,maxY]内的y
+     */
+    synchronized int resolveY(int id, int x, int y, int width, int height, int minY, int maxY) {
+        if (maxY < minY) {
+            maxY = minY;
+        }
+        int clampedY = Math.max(minY, Math.min(maxY, y));
+        if (width <= 0 || height <= 0) {
+            return clampedY;
+        }
+        int obstacles = collectObstacles(id, x, x + width);
+        if (obstacles == 0 || isFree(clampedY, height, obstacles)) {
+            return clampedY;
+        }
+        int best = clampedY;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < obstacles; i++) {
+            int above = mObstacleTops[i] - height;
+            int below = mObstacleBottoms[i];
+            if (above >= minY && above <= maxY && isFree(above, height, obstacles)) {
+                int distance = Math.abs(above - y);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = above;
+                }
+            }
+            if (below >= minY && below <= maxY && isFree(below, height, obstacles)) {
+                int distance = Math.abs(below - y);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = below;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int collectObstacles(int id, int left, int right) {
+        if (mObstacleTops.length < mCount) {
+            mObstacleTops = new int[mIds.length];
+            mObstacleBottoms = new int[mIds.length];
+        }
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mIds[i] == id) {
+                continue;
+            }
+            if (mRights[i] <= left || mLefts[i] >= right) {
+                continue;
+            }
+            mObstacleTops[count] = mTops[i] - mSpacing;
+            mObstacleBottoms[count] = mBottoms[i] + mSpacing;
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isFree(int top, int height, int obstacles) {
+        int bottom = top + height;
+        for (int i = 0; i < obstacles; i++) {
+            if (top < mObstacleBottoms[i] && bottom > mObstacleTops[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < mCount; i++) {
+            if (mIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mIds.length) {
+            return;
+        }
+        int size = Math.max(capacity, mIds.length * 2);
+        mIds = Arrays.copyOf(mIds, size);
+        mLefts = Arrays.copyOf(mLefts, size);
+        mTops = Arrays.copyOf(mTops, size);
+        mRights = Arrays.copyOf(mRights, size);
+        mBottoms = Arrays.copyOf(mBottoms, size);
+    }
+}
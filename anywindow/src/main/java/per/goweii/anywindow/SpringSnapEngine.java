@@ -0,0 +1,196 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.FloatRange;
+
+/**
+ * 描述：弹簧模型
+ * 以目标位置为平衡点的阻尼弹簧，松手速度作为初速度，按解析解计算位置。
+ * 默认为临界阻尼，并且越过目标位置时直接停在目标位置，吸附到屏幕边缘时不会冲出屏幕。
+ */
+public class SpringSnapEngine implements SnapEngine {
+
+    public static final float DEFAULT_STIFFNESS = 400F;
+    public static final float DEFAULT_DAMPING_RATIO = 1F;
+
+    /**
+     * 位置和速度都小于该值时认为已静止
+     */
+    private static final float REST_DISPLACEMENT = 0.5F;
+    private static final float REST_VELOCITY = 10F;
+
+    private final Axis mAxisX;
+    private final Axis mAxisY;
+
+    private float mTargetX = 0F;
+    private float mTargetY = 0F;
+    private float mCurrX = 0F;
+    private float mCurrY = 0F;
+    private long mStartTime = 0L;
+    private boolean mFinished = true;
+    private boolean mOvershootClamping = true;
+
+    public SpringSnapEngine() {
+        this(DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+    }
+
+    /**
+     * @param stiffness    刚度，越大越快回到目标位置
+     * @param dampingRatio 阻尼比，小于1会有回弹，等于1为临界阻尼，大于1为过阻尼
+     */
+    public SpringSnapEngine(float stiffness, @FloatRange(from = 0, to = Float.MAX_VALUE) float dampingRatio) {
+        if (stiffness <= 0F) {
+            throw new IllegalArgumentException("stiffness must be positive");
+        }
+        if (dampingRatio <= 0F) {
+            throw new IllegalArgumentException("dampingRatio must be positive");
+        }
+        mAxisX = new Axis(stiffness, dampingRatio);
+        mAxisY = new Axis(stiffness, dampingRatio);
+    }
+
+    /**
+     * 越过目标位置时是否直接停在目标位置，默认开启
+     * 临界阻尼在松手速度很快时仍会越过目标一次，关闭后才能看到回弹效果。
+     */
+    public SpringSnapEngine setOvershootClamping(boolean clamping) {
+        mOvershootClamping = clamping;
+        return this;
+    }
+
+    @Override
+    public void start(float startX, float startY,
+                      float velocityX, float velocityY,
+                      float targetX, float targetY,
+                      long startTimeMillis) {
+        mTargetX = targetX;
+        mTargetY = targetY;
+        mCurrX = startX;
+        mCurrY = startY;
+        mStartTime = startTimeMillis;
+        mAxisX.start(startX - targetX, velocityX, mOvershootClamping);
+        mAxisY.start(startY - targetY, velocityY, mOvershootClamping);
+        mFinished = false;
+    }
+
+    @Override
+    public boolean step(long timeMillis) {
+        if (mFinished) {
+            return false;
+        }
+        double t = Math.max(0L, timeMillis - mStartTime) / 1000D;
+        mAxisX.compute(t);
+        mAxisY.compute(t);
+        if (mAxisX.isAtRest() && mAxisY.isAtRest()) {
+            mCurrX = mTargetX;
+            mCurrY = mTargetY;
+            mFinished = true;
+            return false;
+        }
+        mCurrX = mTargetX + (float) mAxisX.displacement;
+        mCurrY = mTargetY + (float) mAxisY.displacement;
+        return true;
+    }
+
+    @Override
+    public float getCurrX() {
+        return mCurrX;
+    }
+
+    @Override
+    public float getCurrY() {
+        return mCurrY;
+    }
+
+    @Override
+    public void abort() {
+        mFinished = true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * 单轴的阻尼谐振子
+     */
+    private static final class Axis {
+
+        private final double mNaturalFreq;
+        private final double mDampingRatio;
+
+        private double mX0 = 0D;
+        private double mV0 = 0D;
+        /**
+         * 开始时偏离目标的方向，越过目标后符号相反
+         */
+        private double mSide = 0D;
+        private boolean mClamped = false;
+
+        double displacement = 0D;
+        double velocity = 0D;
+
+        Axis(float stiffness, float dampingRatio) {
+            mNaturalFreq = Math.sqrt(stiffness);
+            mDampingRatio = dampingRatio;
+        }
+
+        void start(double x0, double v0, boolean clamping) {
+            mX0 = x0;
+            mV0 = v0;
+            if (!clamping) {
+                mSide = 0D;
+            } else if (x0 != 0D) {
+                mSide = Math.signum(x0);
+            } else {
+                mSide = Math.signum(v0);
+            }
+            mClamped = false;
+            displacement = x0;
+            velocity = v0;
+        }
+
+        void compute(double t) {
+            if (mClamped) {
+                return;
+            }
+            double w0 = mNaturalFreq;
+            double z = mDampingRatio;
+            if (z < 1D) {
+                double wd = w0 * Math.sqrt(1D - z * z);
+                double a = mX0;
+                double b = (mV0 + z * w0 * mX0) / wd;
+                double decay = Math.exp(-z * w0 * t);
+                double cos = Math.cos(wd * t);
+                double sin = Math.sin(wd * t);
+                displacement = decay * (a * cos + b * sin);
+                velocity = decay * ((b * wd - z * w0 * a) * cos - (a * wd + z * w0 * b) * sin);
+            } else if (z == 1D) {
+                double a = mX0;
+                double b = mV0 + w0 * mX0;
+                double decay = Math.exp(-w0 * t);
+                displacement = (a + b * t) * decay;
+                velocity = (b - w0 * (a + b * t)) * decay;
+            } else {
+                double s = Math.sqrt(z * z - 1D);
+                double r1 = -w0 * (z - s);
+                double r2 = -w0 * (z + s);
+                double c2 = (mV0 - r1 * mX0) / (r2 - r1);
+                double c1 = mX0 - c2;
+                double e1 = Math.exp(r1 * t);
+                double e2 = Math.exp(r2 * t);
+                displacement = c1 * e1 + c2 * e2;
+                velocity = c1 * r1 * e1 + c2 * r2 * e2;
+            }
+            if (displacement * mSide < 0D) {
+                mClamped = true;
+                displacement = 0D;
+                velocity = 0D;
+            }
+        }
+
+        boolean isAtRest() {
+            return Math.abs(displacement) < REST_DISPLACEMENT && Math.abs(velocity) < REST_VELOCITY;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+/**
+ * 描述：记录悬浮窗收到的原始触摸事件
+ * 每个MOVE事件中批量的历史采样点随事件一起保存，回放时仍是同一个批量事件。
+ * 坐标为屏幕坐标，时间相对于开始记录后的第一个事件。
+ */
+public final class TouchRecorder {
+
+    private final TouchTrack mTrack;
+    private boolean mRecording = false;
+    private long mStartTime = -1L;
+
+    public TouchRecorder() {
+        mTrack = new TouchTrack(256);
+    }
+
+    /**
+     * 开始记录，会清除之前记录的事件
+     */
+    public void start() {
+        mTrack.clear();
+        mStartTime = -1L;
+        mRecording = true;
+    }
+
+    public void stop() {
+        mRecording = false;
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /**
+     * 已记录的事件，记录过程中会持续变化
+     */
+    @NonNull
+    public TouchTrack getTrack() {
+        return mTrack;
+    }
+
+    void record(@NonNull MotionEvent event) {
+        if (!mRecording) {
+            return;
+        }
+        if (mStartTime < 0L) {
+            mStartTime = event.getEventTime();
+        }
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        int action = event.getActionMasked();
+        for (int i = 0; i < event.getHistorySize(); i++) {
+            mTrack.addHistorical(event.getHistoricalEventTime(i) - mStartTime,
+                    event.getHistoricalX(i) + offsetX,
+                    event.getHistoricalY(i) + offsetY);
+        }
+        mTrack.add(action, event.getEventTime() - mStartTime, event.getRawX(), event.getRawY());
+    }
+}
@@ -0,0 +1,248 @@
+package per.goweii.anywindow;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.MotionEvent;
+
+/**
+ * 描述：将记录的触摸事件回放给悬浮窗
+ * 可按原始速度、加速或不等待地回放，回放结束后输出每个事件的处理耗时和悬浮窗位置。
+ * 事件总是在悬浮窗所在线程送入，回放结束的回调也在该线程。
+ */
+public final class TouchReplayer {
+
+    private final AnyWindow mWindow;
+    private final TouchTrack mTrack;
+    private final Handler mHandler;
+
+    private float mSpeed = 1F;
+    private OnReplayListener mListener = null;
+
+    private Report mReport = null;
+    private long mDownTime = 0L;
+    private int mIndex = 0;
+    private volatile boolean mRunning = false;
+
+    private final Runnable mStepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
+    private final Runnable mStartRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startOnWindowThread();
+        }
+    };
+    private final Runnable mCancelRunnable = new Runnable() {
+        @Override
+        public void run() {
+            cancelOnWindowThread();
+        }
+    };
+
+    public TouchReplayer(@NonNull AnyWindow window, @NonNull TouchTrack track) {
+        mWindow = window;
+        mTrack = track;
+        mHandler = new Handler(window.getManager().getLooper());
+    }
+
+    /**
+     * 回放速度倍率，1为原始速度，小于等于0表示不等待、在悬浮窗所在线程一次回放全部事件
+     */
+    public TouchReplayer setSpeed(float speed) {
+        mSpeed = speed;
+        return this;
+    }
+
+    public TouchReplayer setOnReplayListener(@Nullable OnReplayListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * 可在任意线程调用，不在悬浮窗所在线程时会切换过去开始回放
+     */
+    @AnyThread
+    public void start() {
+        mWindow.runOnWindowThread(mStartRunnable);
+    }
+
+    @AnyThread
+    public void cancel() {
+        mWindow.runOnWindowThread(mCancelRunnable);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    private void startOnWindowThread() {
+        cancelOnWindowThread();
+        mReport = new Report(mTrack.size(), mWindow);
+        mDownTime = SystemClock.uptimeMillis();
+        mIndex = 0;
+        mRunning = true;
+        if (mSpeed <= 0F) {
+            while (mRunning) {
+                step();
+            }
+        } else {
+            step();
+        }
+    }
+
+    private void cancelOnWindowThread() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mHandler.removeCallbacks(mStepRunnable);
+    }
+
+    private void step() {
+        if (!mRunning) {
+            return;
+        }
+        if (mIndex >= mTrack.size()) {
+            mRunning = false;
+            mReport.finish(mWindow);
+            if (mListener != null) {
+                mListener.onReplayFinished(mReport);
+            }
+            return;
+        }
+        MotionEvent event = mTrack.obtainEvent(mIndex, mDownTime, mSpeed > 0F ? mSpeed : 1F);
+        long start = System.nanoTime();
+        mWindow.onTouch(mWindow.getView(), event);
+        long nanos = System.nanoTime() - start;
+        event.recycle();
+        mReport.onEvent(mIndex, nanos, mWindow.getViewX(), mWindow.getViewY());
+        mIndex++;
+        if (mSpeed > 0F && mIndex < mTrack.size()) {
+            mHandler.postAtTime(mStepRunnable, mDownTime + scaled(mTrack.getTime(mIndex)));
+        } else if (mSpeed > 0F) {
+            mHandler.post(mStepRunnable);
+        }
+    }
+
+    private long scaled(long time) {
+        if (mSpeed <= 0F) {
+            return time;
+        }
+        return (long) (time / mSpeed);
+    }
+
+    public interface OnReplayListener {
+        /**
+         * 在悬浮窗所在线程回调
+         */
+        void onReplayFinished(@NonNull Report report);
+    }
+
+    /**
+     * 单次回放的结果
+     */
+    public static final class Report {
+
+        private final long[] mProcessNanos;
+        private final int[] mWindowXs;
+        private final int[] mWindowYs;
+        private final long mStartUpdateRequestCount;
+        private final long mStartUpdateFlushCount;
+        private final long mStartUpdateSkippedCount;
+        private final long mStartTime;
+
+        private long mDurationMillis = 0L;
+        private long mUpdateRequestCount = 0L;
+        private long mUpdateFlushCount = 0L;
+        private long mUpdateSkippedCount = 0L;
+
+        private Report(int size, AnyWindow window) {
+            mProcessNanos = new long[size];
+            mWindowXs = new int[size];
+            mWindowYs = new int[size];
+            mStartUpdateRequestCount = window.getUpdateRequestCount();
+            mStartUpdateFlushCount = window.getUpdateFlushCount();
+            mStartUpdateSkippedCount = window.getUpdateSkippedCount();
+            mStartTime = SystemClock.uptimeMillis();
+        }
+
+        private void onEvent(int index, long nanos, int x, int y) {
+            mProcessNanos[index] = nanos;
+            mWindowXs[index] = x;
+            mWindowYs[index] = y;
+        }
+
+        private void finish(AnyWindow window) {
+            mDurationMillis = SystemClock.uptimeMillis() - mStartTime;
+            mUpdateRequestCount = window.getUpdateRequestCount() - mStartUpdateRequestCount;
+            mUpdateFlushCount = window.getUpdateFlushCount() - mStartUpdateFlushCount;
+            mUpdateSkippedCount = window.getUpdateSkippedCount() - mStartUpdateSkippedCount;
+        }
+
+        public int getEventCount() {
+            return mProcessNanos.length;
+        }
+
+        /**
+         * 第index个事件在onTouch中的处理耗时
+         */
+        public long getProcessNanos(int index) {
+            return mProcessNanos[index];
+        }
+
+        /**
+         * 第index个事件处理后悬浮窗的位置
+         */
+        public int getWindowX(int index) {
+            return mWindowXs[index];
+        }
+
+        public int getWindowY(int index) {
+            return mWindowYs[index];
+        }
+
+        public long getTotalProcessNanos() {
+            long total = 0L;
+            for (long nanos : mProcessNanos) {
+                total += nanos;
+            }
+            return total;
+        }
+
+        public long getDurationMillis() {
+            return mDurationMillis;
+        }
+
+        public long getUpdateRequestCount() {
+            return mUpdateRequestCount;
+        }
+
+        public long getUpdateFlushCount() {
+            return mUpdateFlushCount;
+        }
+
+        public long getUpdateSkippedCount() {
+            return mUpdateSkippedCount;
+        }
+
+        @Override
+        public String toString() {
+            int count = getEventCount();
+            return "Report{" +
+                    "events=" + count +
+                    ", duration=" + mDurationMillis + "ms" +
+                    ", avgProcess=" + (count == 0 ? 0L : getTotalProcessNanos() / count) + "ns" +
+                    ", updateRequests=" + mUpdateRequestCount +
+                    ", updateFlushes=" + mUpdateFlushCount +
+                    ", updatesSkipped=" + mUpdateSkippedCount +
+                    (count == 0 ? "" : ", end=[" + mWindowXs[count - 1] + "," + mWindowYs[count - 1] + "]") +
+                    '}';
+        }
+    }
+}
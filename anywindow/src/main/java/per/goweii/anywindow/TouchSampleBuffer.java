@@ -0,0 +1,177 @@
+package per.goweii.anywindow;
+
+/**
+ * 描述：最近若干个触摸点的环形缓冲区
+ * 内部使用固定大小的基本类型数组，创建后可在多次手势间复用，不再产生对象分配。
+ */
+final class TouchSampleBuffer {
+
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mTime;
+    private final int mCapacity;
+
+    private int mHead = 0;
+    private int mSize = 0;
+
+    private float mVelocityX = 0F;
+    private float mVelocityY = 0F;
+
+    TouchSampleBuffer(int capacity) {
+        if (capacity <= 1) {
+            throw new IllegalArgumentException("capacity must be greater than 1");
+        }
+        mCapacity = capacity;
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mTime = new long[capacity];
+    }
+
+    void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    void add(float x, float y, long time) {
+        mX[mHead] = x;
+        mY[mHead] = y;
+        mTime[mHead] = time;
+        mHead = (mHead + 1) % mCapacity;
+        if (mSize < mCapacity) {
+            mSize++;
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 缓冲区数组占用的字节数
+     */
+    long sizeInBytes() {
+        return mCapacity * (4L + 4L + 8L);
+    }
+
+    /**
+     * @param age 0为最新的点，size()-1为最旧的点
+     */
+    float getX(int age) {
+        return mX[indexOf(age)];
+    }
+
+    float getY(int age) {
+        return mY[indexOf(age)];
+    }
+
+    long getTime(int age) {
+        return mTime[indexOf(age)];
+    }
+
+    /**
+     * 计算最近一段时间内的移动方向
+     *
+     * @param windowMillis 参与计算的时间范围
+     * @return 方向角度，与x轴正方向的夹角，范围(-180,180]，没有移动时返回0
+     */
+    float getDirectionDegrees(long windowMillis) {
+        if (mSize < 2) {
+            return 0F;
+        }
+        long newestTime = getTime(0);
+        int oldest = 1;
+        for (int age = 1; age < mSize; age++) {
+            oldest = age;
+            if (newestTime - getTime(age) >= windowMillis) {
+                break;
+            }
+        }
+        float dx = getX(0) - getX(oldest);
+        float dy = getY(0) - getY(oldest);
+        if (dx == 0F && dy == 0F) {
+            return 0F;
+        }
+        return (float) Math.toDegrees(Math.atan2(dy, dx));
+    }
+
+    /**
+     * 对最近一段时间内的点做最小二乘直线拟合，计算速度
+     * 结果通过{@link #getVelocityX()}和{@link #getVelocityY()}获取
+     *
+     * @param windowMillis 参与计算的时间范围
+     * @return 参与计算的点不足2个时返回false，速度置为0
+     */
+    boolean computeVelocity(long windowMillis) {
+        mVelocityX = 0F;
+        mVelocityY = 0F;
+        if (mSize < 2) {
+            return false;
+        }
+        long newestTime = getTime(0);
+        int count = 0;
+        double sumT = 0D;
+        double sumX = 0D;
+        double sumY = 0D;
+        for (int age = 0; age < mSize; age++) {
+            long dt = getTime(age) - newestTime;
+            if (-dt > windowMillis) {
+                break;
+            }
+            sumT += dt;
+            sumX += getX(age);
+            sumY += getY(age);
+            count++;
+        }
+        if (count < 2) {
+            return false;
+        }
+        double meanT = sumT / count;
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        double stt = 0D;
+        double stx = 0D;
+        double sty = 0D;
+        for (int age = 0; age < count; age++) {
+            double t = getTime(age) - newestTime - meanT;
+            stt += t * t;
+            stx += t * (getX(age) - meanX);
+            sty += t * (getY(age) - meanY);
+        }
+        if (stt == 0D) {
+            return false;
+        }
+        // 时间单位为毫秒，转换为像素/秒
+        mVelocityX = (float) (stx / stt * 1000D);
+        mVelocityY = (float) (sty / stt * 1000D);
+        return true;
+    }
+
+    /**
+     * 最近一次{@link #computeVelocity(long)}的x速度，像素/秒
+     */
+    float getVelocityX() {
+        return mVelocityX;
+    }
+
+    /**
+     * 最近一次{@link #computeVelocity(long)}的y速度，像素/秒
+     */
+    float getVelocityY() {
+        return mVelocityY;
+    }
+
+    private int indexOf(int age) {
+        if (age < 0 || age >= mSize) {
+            throw new IndexOutOfBoundsException("age=" + age + ", size=" + mSize);
+        }
+        int index = mHead - 1 - age;
+        if (index < 0) {
+            index += mCapacity;
+        }
+        return index;
+    }
+}
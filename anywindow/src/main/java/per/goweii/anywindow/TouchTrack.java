@@ -0,0 +1,295 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 描述：一段单指触摸事件序列
+ * 以基本类型数组保存动作、时间和屏幕坐标，用于回放和基准测试。
+ * 一个事件可以包含多个采样点，与MotionEvent相同，最后一个为当前点，之前的为批量的历史点，回放时还原为同样的批量事件。
+ * <p>
+ * 二进制格式：魔数(int) 版本(byte) 事件数(int)，
+ * 之后每个事件为 动作(byte) 采样点数(变长整数)，
+ * 再依次为每个采样点的 与上一采样点的时间差(变长整数，毫秒) x(float) y(float)。
+ * 版本1没有采样点数，每个事件只有一个采样点，仍可读取。
+ */
+public final class TouchTrack {
+
+    private static final int MAGIC = 0x4154524B;
+    private static final int VERSION = 2;
+    private static final int VERSION_SINGLE_SAMPLE = 1;
+
+    private int[] mActions;
+    /**
+     * 每个事件最后一个采样点之后的下标
+     */
+    private int[] mSampleEnds;
+    private int mSize = 0;
+
+    private long[] mTimes;
+    private float[] mXs;
+    private float[] mYs;
+    private int mSampleCount = 0;
+
+    public TouchTrack() {
+        this(64);
+    }
+
+    public TouchTrack(int capacity) {
+        capacity = Math.max(capacity, 4);
+        mActions = new int[capacity];
+        mSampleEnds = new int[capacity];
+        mTimes = new long[capacity];
+        mXs = new float[capacity];
+        mYs = new float[capacity];
+    }
+
+    /**
+     * 生成一段匀速直线拖拽：1个DOWN、steps个MOVE、1个UP
+     */
+    @NonNull
+    public static TouchTrack drag(float startX, float startY, float endX, float endY,
+                                  int steps, long durationMillis) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("steps must be positive");
+        }
+        TouchTrack track = new TouchTrack(steps + 2);
+        track.add(MotionEvent.ACTION_DOWN, 0L, startX, startY);
+        for (int i = 1; i <= steps; i++) {
+            float fraction = i / (float) steps;
+            track.add(MotionEvent.ACTION_MOVE,
+                    durationMillis * i / steps,
+                    startX + (endX - startX) * fraction,
+                    startY + (endY - startY) * fraction);
+        }
+        track.add(MotionEvent.ACTION_UP, durationMillis, endX, endY);
+        return track;
+    }
+
+    /**
+     * 添加一个事件，之前通过{@link #addHistorical(long, float, float)}添加的点作为它的历史点
+     *
+     * @param action 动作，见{@link MotionEvent#getActionMasked()}
+     * @param time   相对于第一个事件的时间，单位毫秒
+     * @param x      屏幕坐标x
+     * @param y      屏幕坐标y
+     */
+    public void add(int action, long time, float x, float y) {
+        addSample(time, x, y);
+        if (mSize == mActions.length) {
+            int capacity = mSize * 2;
+            mActions = Arrays.copyOf(mActions, capacity);
+            mSampleEnds = Arrays.copyOf(mSampleEnds, capacity);
+        }
+        mActions[mSize] = action;
+        mSampleEnds[mSize] = mSampleCount;
+        mSize++;
+    }
+
+    /**
+     * 为下一个添加的事件添加一个批量的历史点，按时间顺序调用
+     */
+    public void addHistorical(long time, float x, float y) {
+        addSample(time, x, y);
+    }
+
+    private void addSample(long time, float x, float y) {
+        if (mSampleCount == mTimes.length) {
+            int capacity = mSampleCount * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mXs = Arrays.copyOf(mXs, capacity);
+            mYs = Arrays.copyOf(mYs, capacity);
+        }
+        mTimes[mSampleCount] = time;
+        mXs[mSampleCount] = x;
+        mYs[mSampleCount] = y;
+        mSampleCount++;
+    }
+
+    /**
+     * 写入二进制数据，不会关闭输出流
+     */
+    public void writeTo(@NonNull OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(mSize);
+        long lastTime = 0L;
+        for (int i = 0; i < mSize; i++) {
+            int start = startOf(i);
+            int end = mSampleEnds[i];
+            data.writeByte(mActions[i]);
+            writeVarLong(data, end - start);
+            for (int s = start; s < end; s++) {
+                writeVarLong(data, Math.max(0L, mTimes[s] - lastTime));
+                data.writeFloat(mXs[s]);
+                data.writeFloat(mYs[s]);
+                lastTime = mTimes[s];
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * 读取{@link #writeTo(OutputStream)}写入的数据，不会关闭输入流
+     */
+    @NonNull
+    public static TouchTrack readFrom(@NonNull InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a touch track");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION && version != VERSION_SINGLE_SAMPLE) {
+            throw new IOException("Unsupported touch track version " + version);
+        }
+        int size = data.readInt();
+        if (size < 0) {
+            throw new IOException("Illegal event count " + size);
+        }
+        TouchTrack track = new TouchTrack(size);
+        long time = 0L;
+        for (int i = 0; i < size; i++) {
+            int action = data.readUnsignedByte();
+            long samples = version == VERSION_SINGLE_SAMPLE ? 1L : readVarLong(data);
+            if (samples < 1L || samples > Integer.MAX_VALUE) {
+                throw new IOException("Illegal sample count " + samples);
+            }
+            for (long s = 1L; s < samples; s++) {
+                time += readVarLong(data);
+                track.addHistorical(time, data.readFloat(), data.readFloat());
+            }
+            time += readVarLong(data);
+            float x = data.readFloat();
+            float y = data.readFloat();
+            track.add(action, time, x, y);
+        }
+        return track;
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    public void clear() {
+        mSize = 0;
+        mSampleCount = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getAction(int index) {
+        checkIndex(index);
+        return mActions[index];
+    }
+
+    /**
+     * 第index个事件当前点的时间
+     */
+    public long getTime(int index) {
+        checkIndex(index);
+        return mTimes[mSampleEnds[index] - 1];
+    }
+
+    public float getX(int index) {
+        checkIndex(index);
+        return mXs[mSampleEnds[index] - 1];
+    }
+
+    public float getY(int index) {
+        checkIndex(index);
+        return mYs[mSampleEnds[index] - 1];
+    }
+
+    /**
+     * 第index个事件批量的历史点数，与{@link MotionEvent#getHistorySize()}一致
+     */
+    public int getHistorySize(int index) {
+        checkIndex(index);
+        return mSampleEnds[index] - startOf(index) - 1;
+    }
+
+    public long getHistoricalTime(int index, int pos) {
+        return mTimes[historicalIndex(index, pos)];
+    }
+
+    public float getHistoricalX(int index, int pos) {
+        return mXs[historicalIndex(index, pos)];
+    }
+
+    public float getHistoricalY(int index, int pos) {
+        return mYs[historicalIndex(index, pos)];
+    }
+
+    /**
+     * 生成第index个事件，包括批量的历史点，调用方负责recycle
+     *
+     * @param downTime 事件序列的起始时间，与{@link android.os.SystemClock#uptimeMillis()}同一时钟
+     */
+    @NonNull
+    MotionEvent obtainEvent(int index, long downTime) {
+        return obtainEvent(index, downTime, 1F);
+    }
+
+    /**
+     * @param speed 回放速度倍率，事件的相对时间除以该值
+     */
+    @NonNull
+    MotionEvent obtainEvent(int index, long downTime, float speed) {
+        checkIndex(index);
+        int start = startOf(index);
+        int end = mSampleEnds[index];
+        MotionEvent event = MotionEvent.obtain(downTime, downTime + scaled(mTimes[start], speed),
+                mActions[index], mXs[start], mYs[start], 0);
+        for (int s = start + 1; s < end; s++) {
+            event.addBatch(downTime + scaled(mTimes[s], speed), mXs[s], mYs[s], 1F, 1F, 0);
+        }
+        return event;
+    }
+
+    private static long scaled(long time, float speed) {
+        return speed == 1F ? time : (long) (time / speed);
+    }
+
+    private int startOf(int index) {
+        return index == 0 ? 0 : mSampleEnds[index - 1];
+    }
+
+    private int historicalIndex(int index, int pos) {
+        if (pos < 0 || pos >= getHistorySize(index)) {
+            throw new IndexOutOfBoundsException("pos=" + pos + ", historySize=" + getHistorySize(index));
+        }
+        return startOf(index) + pos;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mSize);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package per.goweii.anywindow;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+/**
+ * 描述：悬浮窗布局更新调度器
+ * 同一帧内的多次更新请求会被合并，在下一次vsync时只执行一次updateViewLayout。
+ * Choreographer与线程绑定，只能在悬浮窗所在线程调用，其他线程调用会抛出异常。
+ */
+final class UpdateScheduler implements Choreographer.FrameCallback {
+
+    private final Looper mLooper;
+    private final Runnable mFlushAction;
+    private Choreographer mChoreographer = null;
+
+    private boolean mImmediate = false;
+    private boolean mScheduled = false;
+    private boolean mPaused = false;
+    private boolean mPending = false;
+
+    private long mRequestCount = 0L;
+    private long mFlushCount = 0L;
+
+    UpdateScheduler(@NonNull Looper looper, @NonNull Runnable flushAction) {
+        mLooper = looper;
+        mFlushAction = flushAction;
+    }
+
+    /**
+     * 立即模式下每次请求都会直接执行更新，不再按帧合并
+     */
+    void setImmediate(boolean immediate) {
+        mImmediate = immediate;
+        if (mImmediate && mScheduled) {
+            flush();
+        }
+    }
+
+    /**
+     * 暂停期间的请求和立即更新都只做标记，恢复时合并为一次更新
+     */
+    void setPaused(boolean paused) {
+        if (mPaused == paused) {
+            return;
+        }
+        mPaused = paused;
+        if (mPaused) {
+            if (mScheduled) {
+                cancel();
+                mPending = true;
+            }
+        } else if (mPending) {
+            flush();
+        }
+    }
+
+    boolean isPaused() {
+        return mPaused;
+    }
+
+    boolean isImmediate() {
+        return mImmediate;
+    }
+
+    /**
+     * 请求一次更新，在下一帧执行
+     */
+    void request() {
+        mRequestCount++;
+        if (mPaused) {
+            mPending = true;
+            return;
+        }
+        if (mImmediate) {
+            flush();
+            return;
+        }
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        getChoreographer().postFrameCallback(this);
+    }
+
+    /**
+     * 立即执行更新，同时取消已安排的帧回调
+     */
+    void flush() {
+        cancel();
+        if (mPaused) {
+            mPending = true;
+            return;
+        }
+        mPending = false;
+        mFlushCount++;
+        mFlushAction.run();
+    }
+
+    /**
+     * 取消已安排但未执行的更新
+     */
+    void cancel() {
+        mPending = false;
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        getChoreographer().removeFrameCallback(this);
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    long getRequestCount() {
+        return mRequestCount;
+    }
+
+    long getFlushCount() {
+        return mFlushCount;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        mFlushCount++;
+        mFlushAction.run();
+    }
+
+    private Choreographer getChoreographer() {
+        if (Looper.myLooper() != mLooper) {
+            throw new IllegalStateException("UpdateScheduler must be used on the window thread");
+        }
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        return mChoreographer;
+    }
+}
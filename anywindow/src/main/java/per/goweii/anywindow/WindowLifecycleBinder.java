@@ -0,0 +1,67 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+
+/**
+ * 描述：将悬浮窗绑定到宿主Activity的生命周期
+ * 宿主不可见时暂停动画并合并更新，重新可见时只更新一次，销毁时移除悬浮窗。
+ */
+final class WindowLifecycleBinder implements Application.ActivityLifecycleCallbacks {
+
+    private final Activity mActivity;
+    private final AnyWindow mWindow;
+
+    static void bind(@NonNull AnyWindow window, @NonNull Activity activity) {
+        Application application = activity.getApplication();
+        if (application == null) {
+            return;
+        }
+        application.registerActivityLifecycleCallbacks(new WindowLifecycleBinder(window, activity));
+    }
+
+    private WindowLifecycleBinder(AnyWindow window, Activity activity) {
+        mWindow = window;
+        mActivity = activity;
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        if (activity == mActivity) {
+            mWindow.onHostStarted();
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (activity == mActivity) {
+            mWindow.onHostStopped();
+        }
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (activity == mActivity) {
+            mActivity.getApplication().unregisterActivityLifecycleCallbacks(this);
+            mWindow.onHostDestroyed();
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
@@ -0,0 +1,183 @@
+package per.goweii.anywindow;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 描述：未显示的悬浮窗的内存回收策略
+ * 进程内共享一份，弱引用持有所有未显示的悬浮窗。
+ * 闲置超过各自设置的时长，或收到系统的内存不足通知时，释放这些悬浮窗的重量级资源。
+ * 登记和回收可在不同线程进行，释放时由悬浮窗切换到自己的线程。
+ */
+final class WindowMemoryPolicy implements ComponentCallbacks2 {
+
+    /**
+     * 单个view对象的粗略估算，包括其字段、RenderNode和监听器等附属对象
+     */
+    static final long VIEW_BYTES = 1024L;
+
+    private static WindowMemoryPolicy sInstance = null;
+
+    private final Set<AnyWindow> mIdleWindows = Collections.newSetFromMap(new WeakHashMap<AnyWindow, Boolean>());
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mCheckAction = new Runnable() {
+        @Override
+        public void run() {
+            releaseExpired();
+        }
+    };
+
+    @NonNull
+    static synchronized WindowMemoryPolicy get(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new WindowMemoryPolicy(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WindowMemoryPolicy(Context context) {
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * 悬浮窗开始闲置
+     */
+    synchronized void onWindowHidden(@NonNull AnyWindow window) {
+        mIdleWindows.add(window);
+        scheduleCheck();
+    }
+
+    /**
+     * 悬浮窗重新显示，不再参与回收
+     */
+    synchronized void onWindowShown(@NonNull AnyWindow window) {
+        mIdleWindows.remove(window);
+    }
+
+    /**
+     * 释放所有闲置悬浮窗的资源
+     */
+    void releaseAll() {
+        List<AnyWindow> windows;
+        synchronized (this) {
+            windows = new ArrayList<>(mIdleWindows);
+            mIdleWindows.clear();
+            mHandler.removeCallbacks(mCheckAction);
+        }
+        for (AnyWindow window : windows) {
+            window.releaseResources();
+        }
+    }
+
+    private void releaseExpired() {
+        long now = SystemClock.uptimeMillis();
+        List<AnyWindow> expired = null;
+        synchronized (this) {
+            Iterator<AnyWindow> iterator = mIdleWindows.iterator();
+            while (iterator.hasNext()) {
+                AnyWindow window = iterator.next();
+                long deadline = window.getIdleReleaseDeadline();
+                if (deadline > 0L && deadline <= now) {
+                    iterator.remove();
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(window);
+                }
+            }
+            scheduleCheck();
+        }
+        if (expired != null) {
+            for (AnyWindow window : expired) {
+                window.releaseResources();
+            }
+        }
+    }
+
+    /**
+     * 只保留一个延时消息，指向最早到期的悬浮窗
+     */
+    private void scheduleCheck() {
+        long next = Long.MAX_VALUE;
+        for (AnyWindow window : mIdleWindows) {
+            long deadline = window.getIdleReleaseDeadline();
+            if (deadline > 0L && deadline < next) {
+                next = deadline;
+            }
+        }
+        mHandler.removeCallbacks(mCheckAction);
+        if (next != Long.MAX_VALUE) {
+            mHandler.postAtTime(mCheckAction, next);
+        }
+    }
+
+    /**
+     * 只在内存紧张或进程进入后台列表时释放，TRIM_MEMORY_UI_HIDDEN只表示界面不可见
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= TRIM_MEMORY_BACKGROUND) {
+            releaseAll();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        releaseAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * 估算view树占用的字节数，包括每个view对象本身和背景、ImageView图片中的位图
+     */
+    static long measureViewBytes(View view) {
+        if (view == null) {
+            return 0L;
+        }
+        long bytes = VIEW_BYTES + measureDrawableBytes(view.getBackground());
+        if (view instanceof ImageView) {
+            bytes += measureDrawableBytes(((ImageView) view).getDrawable());
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                bytes += measureViewBytes(group.getChildAt(i));
+            }
+        }
+        return bytes;
+    }
+
+    private static long measureDrawableBytes(Drawable drawable) {
+        if (!(drawable instanceof BitmapDrawable)) {
+            return 0L;
+        }
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap == null || bitmap.isRecycled()) {
+            return 0L;
+        }
+        return bitmap.getByteCount();
+    }
+}
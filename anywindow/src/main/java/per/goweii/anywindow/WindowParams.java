@@ -4,6 +4,7 @@ import android.graphics.PixelFormat;
 import android.os.Build;
 import android.os.IBinder;
 import android.support.annotation.FloatRange;
+import android.text.TextUtils;
 import android.view.Gravity;
 import android.view.WindowManager;
 
@@ -15,8 +16,31 @@ import android.view.WindowManager;
  */
 final class WindowParams {
 
+    static final int DIRTY_SIZE = 1;
+    static final int DIRTY_FORMAT = 1 << 1;
+    static final int DIRTY_LOCATION = 1 << 2;
+    static final int DIRTY_GRAVITY = 1 << 3;
+    static final int DIRTY_WEIGHT = 1 << 4;
+    static final int DIRTY_MARGIN = 1 << 5;
+    static final int DIRTY_ANIMATIONS = 1 << 6;
+    static final int DIRTY_ALPHA = 1 << 7;
+    static final int DIRTY_DIM_AMOUNT = 1 << 8;
+    static final int DIRTY_SCREEN_BRIGHTNESS = 1 << 9;
+    static final int DIRTY_TOKEN = 1 << 10;
+    static final int DIRTY_PACKAGE_NAME = 1 << 11;
+    static final int DIRTY_SCREEN_ORIENTATION = 1 << 12;
+    static final int DIRTY_TYPE = 1 << 13;
+    static final int DIRTY_FLAGS = 1 << 14;
+    static final int DIRTY_SOFT_INPUT_MODE = 1 << 15;
+    static final int DIRTY_ALL = (1 << 16) - 1;
+
     private final WindowManager.LayoutParams mLayoutParams;
 
+    /**
+     * 上次执行updateViewLayout之后改变过的属性
+     */
+    private int mDirtyFields = DIRTY_ALL;
+
     public static WindowParams with(WindowManager.LayoutParams params) {
         return new WindowParams(params);
     }
@@ -63,13 +87,19 @@ final class WindowParams {
     }
 
     public WindowParams setSize(int width, int height) {
-        mLayoutParams.width = width;
-        mLayoutParams.height = height;
+        if (mLayoutParams.width != width || mLayoutParams.height != height) {
+            mLayoutParams.width = width;
+            mLayoutParams.height = height;
+            mDirtyFields |= DIRTY_SIZE;
+        }
         return this;
     }
 
     public WindowParams setFormat(int format) {
-        mLayoutParams.format = format;
+        if (mLayoutParams.format != format) {
+            mLayoutParams.format = format;
+            mDirtyFields |= DIRTY_FORMAT;
+        }
         return this;
     }
 
@@ -82,8 +112,11 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setLocation(int x, int y) {
-        mLayoutParams.x = x;
-        mLayoutParams.y = y;
+        if (mLayoutParams.x != x || mLayoutParams.y != y) {
+            mLayoutParams.x = x;
+            mLayoutParams.y = y;
+            mDirtyFields |= DIRTY_LOCATION;
+        }
         return this;
     }
 
@@ -94,7 +127,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setGravity(int gravity) {
-        mLayoutParams.gravity = gravity;
+        if (mLayoutParams.gravity != gravity) {
+            mLayoutParams.gravity = gravity;
+            mDirtyFields |= DIRTY_GRAVITY;
+        }
         return this;
     }
 
@@ -106,7 +142,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setHorizontalWeight(int horizontalWeight) {
-        mLayoutParams.horizontalWeight = horizontalWeight;
+        if (mLayoutParams.horizontalWeight != horizontalWeight) {
+            mLayoutParams.horizontalWeight = horizontalWeight;
+            mDirtyFields |= DIRTY_WEIGHT;
+        }
         return this;
     }
 
@@ -118,7 +157,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setVerticalWeight(int verticalWeight) {
-        mLayoutParams.verticalWeight = verticalWeight;
+        if (mLayoutParams.verticalWeight != verticalWeight) {
+            mLayoutParams.verticalWeight = verticalWeight;
+            mDirtyFields |= DIRTY_WEIGHT;
+        }
         return this;
     }
 
@@ -129,7 +171,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setHorizontalMargin(int horizontalMargin) {
-        mLayoutParams.horizontalMargin = horizontalMargin;
+        if (mLayoutParams.horizontalMargin != horizontalMargin) {
+            mLayoutParams.horizontalMargin = horizontalMargin;
+            mDirtyFields |= DIRTY_MARGIN;
+        }
         return this;
     }
 
@@ -140,7 +185,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setVerticalMargin(int verticalMargin) {
-        mLayoutParams.verticalMargin = verticalMargin;
+        if (mLayoutParams.verticalMargin != verticalMargin) {
+            mLayoutParams.verticalMargin = verticalMargin;
+            mDirtyFields |= DIRTY_MARGIN;
+        }
         return this;
     }
 
@@ -152,7 +200,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setWindowAnimations(int windowAnimations) {
-        mLayoutParams.windowAnimations = windowAnimations;
+        if (mLayoutParams.windowAnimations != windowAnimations) {
+            mLayoutParams.windowAnimations = windowAnimations;
+            mDirtyFields |= DIRTY_ANIMATIONS;
+        }
         return this;
     }
 
@@ -164,7 +215,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setAlpha(@FloatRange(from = 0, to = 1) float alpha) {
-        mLayoutParams.alpha = alpha;
+        if (mLayoutParams.alpha != alpha) {
+            mLayoutParams.alpha = alpha;
+            mDirtyFields |= DIRTY_ALPHA;
+        }
         return this;
     }
 
@@ -176,7 +230,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setDimAmount(@FloatRange(from = 0, to = 1) float dimAmount) {
-        mLayoutParams.dimAmount = dimAmount;
+        if (mLayoutParams.dimAmount != dimAmount) {
+            mLayoutParams.dimAmount = dimAmount;
+            mDirtyFields |= DIRTY_DIM_AMOUNT;
+        }
         return this;
     }
 
@@ -188,7 +245,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setScreenBrightness(@FloatRange(from = 0, to = 1) float screenBrightness) {
-        mLayoutParams.screenBrightness = screenBrightness;
+        if (mLayoutParams.screenBrightness != screenBrightness) {
+            mLayoutParams.screenBrightness = screenBrightness;
+            mDirtyFields |= DIRTY_SCREEN_BRIGHTNESS;
+        }
         return this;
     }
 
@@ -199,7 +259,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setToken(IBinder token) {
-        mLayoutParams.token = token;
+        if (mLayoutParams.token != token) {
+            mLayoutParams.token = token;
+            mDirtyFields |= DIRTY_TOKEN;
+        }
         return this;
     }
 
@@ -210,7 +273,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setPackageName(String packageName) {
-        mLayoutParams.packageName = packageName;
+        if (!TextUtils.equals(mLayoutParams.packageName, packageName)) {
+            mLayoutParams.packageName = packageName;
+            mDirtyFields |= DIRTY_PACKAGE_NAME;
+        }
         return this;
     }
 
@@ -222,7 +288,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setScreenOrientation(int screenOrientation) {
-        mLayoutParams.screenOrientation = screenOrientation;
+        if (mLayoutParams.screenOrientation != screenOrientation) {
+            mLayoutParams.screenOrientation = screenOrientation;
+            mDirtyFields |= DIRTY_SCREEN_ORIENTATION;
+        }
         return this;
     }
 
@@ -332,7 +401,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setType(int type) {
-        mLayoutParams.type = type;
+        if (mLayoutParams.type != type) {
+            mLayoutParams.type = type;
+            mDirtyFields |= DIRTY_TYPE;
+        }
         return this;
     }
 
@@ -430,18 +502,19 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams setFlags(int flags) {
-        mLayoutParams.flags = flags;
+        if (mLayoutParams.flags != flags) {
+            mLayoutParams.flags = flags;
+            mDirtyFields |= DIRTY_FLAGS;
+        }
         return this;
     }
 
     public WindowParams addFlags(int flags) {
-        mLayoutParams.flags |= flags;
-        return this;
+        return setFlags(mLayoutParams.flags | flags);
     }
 
     public WindowParams removeFlags(int flags) {
-        mLayoutParams.flags &= ~flags;
-        return this;
+        return setFlags(mLayoutParams.flags & ~flags);
     }
 
     /**
@@ -490,7 +563,10 @@ final class WindowParams {
      * @return WindowParams
      */
     public WindowParams softInputMode(int softInputMode) {
-        mLayoutParams.softInputMode = softInputMode;
+        if (mLayoutParams.softInputMode != softInputMode) {
+            mLayoutParams.softInputMode = softInputMode;
+            mDirtyFields |= DIRTY_SOFT_INPUT_MODE;
+        }
         return this;
     }
 
@@ -498,4 +574,29 @@ final class WindowParams {
         return mLayoutParams;
     }
 
+    /**
+     * 是否有属性在上次执行updateViewLayout后发生了变化
+     */
+    boolean isDirty() {
+        return mDirtyFields != 0;
+    }
+
+    int getDirtyFields() {
+        return mDirtyFields;
+    }
+
+    /**
+     * 直接修改了{@link #get()}返回的参数时，需要调用该方法标记
+     */
+    void markDirty(int fields) {
+        mDirtyFields |= fields;
+    }
+
+    /**
+     * 参数已提交给WindowManager
+     */
+    void clearDirty() {
+        mDirtyFields = 0;
+    }
+
 }
@@ -0,0 +1,250 @@
+package per.goweii.anywindow;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 描述：悬浮窗位置和大小的持久化
+ * 进程内共享一份。文件只在后台线程读取一次，读取和写入都不会阻塞调用线程；
+ * 读取完成前{@link #get(int, int[])}只能取到本次进程内保存的位置，需要文件中的位置时用{@link #postAfterLoad(Runnable)}。
+ * 写入在后台线程进行，短时间内的多次修改合并为一次写文件，先写临时文件再重命名，不会写坏原文件。
+ */
+final class WindowPositionStore {
+
+    private static final String FILE_NAME = "anywindow_positions";
+    private static final int MAGIC = 0x4157504F;
+    private static final int VERSION = 1;
+    private static final long WRITE_DELAY_MILLIS = 500L;
+
+    private static WindowPositionStore sInstance = null;
+
+    private final File mFile;
+    private final Handler mHandler;
+    private final SparseArray<int[]> mEntries = new SparseArray<>();
+    /**
+     * 读取完成前删除的key，文件中的旧值不再恢复
+     */
+    private final SparseBooleanArray mRemovedBeforeLoad = new SparseBooleanArray();
+    private volatile boolean mLoaded = false;
+
+    private final Runnable mLoadAction = new Runnable() {
+        @Override
+        public void run() {
+            load();
+        }
+    };
+
+    private final Runnable mWriteAction = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    @NonNull
+    static synchronized WindowPositionStore get(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new WindowPositionStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    WindowPositionStore(@NonNull File file) {
+        mFile = file;
+        HandlerThread thread = new HandlerThread("AnyWindow-io", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 在后台线程提前读取文件
+     */
+    void preload() {
+        if (!mLoaded) {
+            mHandler.post(mLoadAction);
+        }
+    }
+
+    boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * 文件读取完成后在后台线程执行，已读取时也在后台线程执行
+     */
+    void postAfterLoad(@NonNull Runnable action) {
+        preload();
+        mHandler.post(action);
+    }
+
+    /**
+     * 不会阻塞，文件尚未读取完成时只包含本次进程内保存的位置
+     *
+     * @param out 长度不小于4，依次为x、y、宽、高
+     * @return 没有保存过时返回false
+     */
+    boolean get(int key, @NonNull int[] out) {
+        synchronized (mEntries) {
+            int[] entry = mEntries.get(key);
+            if (entry == null) {
+                return false;
+            }
+            System.arraycopy(entry, 0, out, 0, entry.length);
+            return true;
+        }
+    }
+
+    /**
+     * 只更新内存，文件在最后一次修改后延时写入
+     */
+    void put(int key, int x, int y, int width, int height) {
+        preload();
+        synchronized (mEntries) {
+            int[] entry = mEntries.get(key);
+            if (entry == null) {
+                entry = new int[4];
+                mEntries.put(key, entry);
+            } else if (entry[0] == x && entry[1] == y && entry[2] == width && entry[3] == height) {
+                return;
+            }
+            entry[0] = x;
+            entry[1] = y;
+            entry[2] = width;
+            entry[3] = height;
+        }
+        mHandler.removeCallbacks(mWriteAction);
+        mHandler.postDelayed(mWriteAction, WRITE_DELAY_MILLIS);
+    }
+
+    void remove(int key) {
+        preload();
+        synchronized (mEntries) {
+            if (!mLoaded) {
+                mRemovedBeforeLoad.put(key, true);
+            } else if (mEntries.get(key) == null) {
+                return;
+            }
+            mEntries.remove(key);
+        }
+        mHandler.removeCallbacks(mWriteAction);
+        mHandler.postDelayed(mWriteAction, WRITE_DELAY_MILLIS);
+    }
+
+    /**
+     * 只在后台线程执行，读文件时不加锁，读取前已保存或删除的key以内存中的为准
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        SparseArray<int[]> loaded = read();
+        synchronized (mEntries) {
+            for (int i = 0; i < loaded.size(); i++) {
+                int key = loaded.keyAt(i);
+                if (mEntries.get(key) == null && !mRemovedBeforeLoad.get(key)) {
+                    mEntries.put(key, loaded.valueAt(i));
+                }
+            }
+            mRemovedBeforeLoad.clear();
+            mLoaded = true;
+        }
+    }
+
+    @NonNull
+    private SparseArray<int[]> read() {
+        SparseArray<int[]> entries = new SparseArray<>();
+        if (!mFile.exists()) {
+            return entries;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int key = in.readInt();
+                int[] entry = new int[4];
+                for (int j = 0; j < entry.length; j++) {
+                    entry[j] = in.readInt();
+                }
+                entries.put(key, entry);
+            }
+        } catch (IOException e) {
+            Log.w("AnyWindow", "failed to read window positions", e);
+            entries.clear();
+        } finally {
+            closeQuietly(in);
+        }
+        return entries;
+    }
+
+    private void write() {
+        // 先合并文件中的内容，避免只写入本次保存的位置
+        load();
+        int count;
+        int[] keys;
+        int[] values;
+        synchronized (mEntries) {
+            count = mEntries.size();
+            keys = new int[count];
+            values = new int[count * 4];
+            for (int i = 0; i < count; i++) {
+                keys[i] = mEntries.keyAt(i);
+                System.arraycopy(mEntries.valueAt(i), 0, values, i * 4, 4);
+            }
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(keys[i]);
+                for (int j = 0; j < 4; j++) {
+                    out.writeInt(values[i * 4 + j]);
+                }
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(mFile)) {
+                Log.w("AnyWindow", "failed to save window positions");
+            }
+        } catch (IOException e) {
+            Log.w("AnyWindow", "failed to save window positions", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
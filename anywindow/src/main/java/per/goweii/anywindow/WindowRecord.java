@@ -0,0 +1,46 @@
+package per.goweii.anywindow;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * 描述：{@link AnyWindowManager}中登记的一个悬浮窗
+ */
+final class WindowRecord {
+
+    final int id;
+    final View view;
+    final WindowParams params;
+    final AnyWindowMetrics metrics;
+    /**
+     * 悬浮窗自己维护位置和大小时由它处理manager发起的移动和缩放，为null时直接修改params
+     */
+    @Nullable
+    final Callback callback;
+
+    /**
+     * 宿主不可见时暂停，期间的更新只保留在params中，恢复时合并提交
+     */
+    boolean paused = false;
+    long updateCount = 0L;
+    long skippedUpdateCount = 0L;
+
+    WindowRecord(int id, @NonNull View view, @NonNull WindowParams params, @NonNull AnyWindowMetrics metrics,
+                 @Nullable Callback callback) {
+        this.id = id;
+        this.view = view;
+        this.params = params;
+        this.metrics = metrics;
+        this.callback = callback;
+    }
+
+    /**
+     * 在manager所在线程回调，处理后只需修改params，manager随后会提交更新
+     */
+    interface Callback {
+        void onMove(int x, int y);
+
+        void onResize(int width, int height);
+    }
+}
@@ -0,0 +1,28 @@
+package per.goweii.anywindow;
+
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+/**
+ * 描述：悬浮窗共用的独立线程
+ * 第一次使用时启动，进程内只有一个，不会退出。
+ * 在此线程添加的悬浮窗，其触摸、布局、绘制和动画都在此线程执行，不受主线程卡顿影响。
+ */
+final class WindowThread {
+
+    private static HandlerThread sThread = null;
+
+    private WindowThread() {
+    }
+
+    @NonNull
+    static synchronized Looper getLooper() {
+        if (sThread == null) {
+            sThread = new HandlerThread("AnyWindow", Process.THREAD_PRIORITY_DISPLAY);
+            sThread.start();
+        }
+        return sThread.getLooper();
+    }
+}
@@ -0,0 +1,223 @@
+package per.goweii.anywindow;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 描述：跨线程的悬浮窗更新队列
+ * 任意线程都可以提交位置/大小/透明度，同一悬浮窗的同一属性只保留最后一次的值，
+ * 在{@link AnyWindowManager}所在线程的下一帧统一执行。
+ * 悬浮窗登记和取消登记都在消费线程进行，每次生成新的按id排序的基本类型数组快照，
+ * 提交线程只读取快照做二分查找，不加锁、不装箱；未登记的id提交的更新直接丢弃。
+ */
+final class WindowUpdateQueue implements Choreographer.FrameCallback {
+
+    static final int FIELD_LOCATION = 1;
+    static final int FIELD_SIZE = 1 << 1;
+    static final int FIELD_ALPHA = 1 << 2;
+
+    private volatile Slots mSlots = Slots.EMPTY;
+    private final ConcurrentLinkedQueue<Pending> mDirtyQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+    private final Handler mHandler;
+    private final Consumer mConsumer;
+    private Choreographer mChoreographer = null;
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            getChoreographer().postFrameCallback(WindowUpdateQueue.this);
+        }
+    };
+
+    WindowUpdateQueue(@NonNull Looper looper, @NonNull Consumer consumer) {
+        mHandler = new Handler(looper);
+        mConsumer = consumer;
+    }
+
+    /**
+     * 悬浮窗登记后才接受其更新，只在消费线程调用
+     */
+    void register(int id) {
+        if (mSlots.get(id) == null) {
+            mSlots = mSlots.with(new Pending(id));
+        }
+    }
+
+    void postLocation(int id, int x, int y) {
+        Pending pending = mSlots.get(id);
+        if (pending == null) {
+            return;
+        }
+        pending.location.set(pack(x, y));
+        markDirty(pending, FIELD_LOCATION);
+    }
+
+    void postSize(int id, int width, int height) {
+        Pending pending = mSlots.get(id);
+        if (pending == null) {
+            return;
+        }
+        pending.size.set(pack(width, height));
+        markDirty(pending, FIELD_SIZE);
+    }
+
+    void postAlpha(int id, float alpha) {
+        Pending pending = mSlots.get(id);
+        if (pending == null) {
+            return;
+        }
+        pending.alpha.set(Float.floatToIntBits(alpha));
+        markDirty(pending, FIELD_ALPHA);
+    }
+
+    /**
+     * 悬浮窗取消登记后丢弃其未执行的更新，之后该id的提交都会被忽略，只在消费线程调用
+     */
+    void discard(int id) {
+        Pending pending = mSlots.get(id);
+        if (pending == null) {
+            return;
+        }
+        mSlots = mSlots.without(id);
+        // 提交线程可能还持有旧快照，标记后即使再次入队也会在消费时丢弃
+        pending.discarded = true;
+        pending.dirty.set(0);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // 先重置标记，消费过程中新提交的更新会安排到下一帧
+        mScheduled.set(false);
+        Pending pending;
+        while ((pending = mDirtyQueue.poll()) != null) {
+            int fields = pending.dirty.getAndSet(0);
+            if (fields == 0 || pending.discarded) {
+                continue;
+            }
+            long location = pending.location.get();
+            long size = pending.size.get();
+            float alpha = Float.intBitsToFloat(pending.alpha.get());
+            mConsumer.onApply(pending.id, fields,
+                    unpackFirst(location), unpackSecond(location),
+                    unpackFirst(size), unpackSecond(size),
+                    alpha);
+        }
+    }
+
+    private void markDirty(Pending pending, int field) {
+        int old;
+        do {
+            old = pending.dirty.get();
+            if ((old & field) == field) {
+                // 已在队列中，新值会覆盖旧值
+                return;
+            }
+        } while (!pending.dirty.compareAndSet(old, old | field));
+        if (old == 0) {
+            mDirtyQueue.offer(pending);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            mHandler.post(mScheduleRunnable);
+        }
+    }
+
+    private Choreographer getChoreographer() {
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        return mChoreographer;
+    }
+
+    private static long pack(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static int unpackFirst(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int unpackSecond(long packed) {
+        return (int) packed;
+    }
+
+    private static final class Pending {
+        final int id;
+        final AtomicInteger dirty = new AtomicInteger(0);
+        final AtomicLong location = new AtomicLong(0L);
+        final AtomicLong size = new AtomicLong(0L);
+        final AtomicInteger alpha = new AtomicInteger(Float.floatToIntBits(1F));
+        volatile boolean discarded = false;
+
+        Pending(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 不可变的id到Pending的映射，ids升序排列
+     */
+    private static final class Slots {
+
+        static final Slots EMPTY = new Slots(new int[0], new Pending[0]);
+
+        final int[] ids;
+        final Pending[] pendings;
+
+        private Slots(int[] ids, Pending[] pendings) {
+            this.ids = ids;
+            this.pendings = pendings;
+        }
+
+        Pending get(int id) {
+            int index = Arrays.binarySearch(ids, id);
+            return index < 0 ? null : pendings[index];
+        }
+
+        Slots with(Pending pending) {
+            int index = -(Arrays.binarySearch(ids, pending.id) + 1);
+            int[] newIds = new int[ids.length + 1];
+            Pending[] newPendings = new Pending[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(pendings, 0, newPendings, 0, index);
+            newIds[index] = pending.id;
+            newPendings[index] = pending;
+            System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+            System.arraycopy(pendings, index, newPendings, index + 1, ids.length - index);
+            return new Slots(newIds, newPendings);
+        }
+
+        Slots without(int id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return this;
+            }
+            int[] newIds = new int[ids.length - 1];
+            Pending[] newPendings = new Pending[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(pendings, 0, newPendings, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+            System.arraycopy(pendings, index + 1, newPendings, index, ids.length - index - 1);
+            return new Slots(newIds, newPendings);
+        }
+    }
+
+    interface Consumer {
+        /**
+         * 在消费线程执行，fields为本次变化的属性
+         */
+        void onApply(int id, int fields, int x, int y, int width, int height, float alpha);
+    }
+}
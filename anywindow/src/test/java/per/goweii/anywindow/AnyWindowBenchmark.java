@@ -0,0 +1,229 @@
+package per.goweii.anywindow;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 描述：拖拽/松手/更新流程的基准测试
+ * 将触摸事件序列直接送入{@link AnyWindow#onTouch}，统计每个事件的耗时、内存分配、Handler消息数和布局更新次数。
+ * 悬浮窗需已显示，否则不会产生实际的updateViewLayout。
+ * 回放是同步进行的，期间不会经过vsync，如需统计每个事件的完整更新开销，
+ * 可先调用{@link AnyWindow#setUpdateImmediate(boolean)}关闭按帧合并。
+ */
+final class AnyWindowBenchmark {
+
+    private AnyWindowBenchmark() {
+    }
+
+    /**
+     * 需在悬浮窗所在线程调用
+     *
+     * @param window     已显示的悬浮窗
+     * @param track      触摸事件序列
+     * @param warmup     预热次数，不计入结果
+     * @param iterations 计入结果的回放次数
+     */
+    @NonNull
+    static Result run(@NonNull AnyWindow window, @NonNull TouchTrack track, int warmup, int iterations) {
+        if (track.size() == 0) {
+            throw new IllegalArgumentException("track is empty");
+        }
+        if (!window.isWindowThread()) {
+            // 同步统计结果，不能切换线程，而在其他线程送入事件时松手动画无法启动
+            throw new IllegalStateException("must be called on the window thread");
+        }
+        for (int i = 0; i < warmup; i++) {
+            replay(window, track, null, null, 0);
+        }
+        AnyWindowManager manager = window.getManager();
+        long requestCount = window.getUpdateRequestCount();
+        long issuedCount = manager.getTotalUpdateCount();
+        long skippedCount = manager.getTotalSkippedUpdateCount();
+        long messageCount = window.getGestureMessageCount();
+        long[] eventNanos = new long[track.size() * iterations];
+        long[] eventBytes = new long[track.size() * iterations];
+        for (int i = 0; i < iterations; i++) {
+            replay(window, track, eventNanos, eventBytes, i * track.size());
+        }
+        return new Result(eventNanos, eventBytes, iterations,
+                window.getGestureMessageCount() - messageCount,
+                window.getUpdateRequestCount() - requestCount,
+                manager.getTotalUpdateCount() - issuedCount,
+                manager.getTotalSkippedUpdateCount() - skippedCount);
+    }
+
+    private static void replay(AnyWindow window, TouchTrack track, long[] eventNanos, long[] eventBytes, int offset) {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // 两次读取之间没有其他代码，差值即读取本身的开销
+        long probe = bean.getThreadAllocatedBytes(threadId);
+        long overhead = bean.getThreadAllocatedBytes(threadId) - probe;
+        long downTime = SystemClock.uptimeMillis();
+        for (int i = 0; i < track.size(); i++) {
+            MotionEvent event = track.obtainEvent(i, downTime);
+            if (eventNanos == null) {
+                window.onTouch(window.getView(), event);
+            } else {
+                long startBytes = bean.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                window.onTouch(window.getView(), event);
+                eventNanos[offset + i] = System.nanoTime() - start;
+                long bytes = bean.getThreadAllocatedBytes(threadId) - startBytes - overhead;
+                eventBytes[offset + i] = Math.max(0L, bytes);
+            }
+            event.recycle();
+        }
+    }
+
+    static final class Result {
+
+        private final int mEventCount;
+        private final long mTotalNanos;
+        private final long mMedianNanos;
+        private final long mP90Nanos;
+        private final long mP99Nanos;
+        private final long mMaxNanos;
+        private final long mAllocatedBytes;
+        private final long mMaxAllocatedBytes;
+        private final int mGestureCount;
+        private final long mHandlerMessageCount;
+        private final long mUpdateRequestCount;
+        private final long mUpdateIssuedCount;
+        private final long mUpdateSkippedCount;
+
+        Result(long[] eventNanos, long[] eventBytes, int gestureCount, long handlerMessageCount,
+               long updateRequestCount, long updateIssuedCount, long updateSkippedCount) {
+            long total = 0L;
+            for (long nanos : eventNanos) {
+                total += nanos;
+            }
+            long[] sorted = eventNanos.clone();
+            Arrays.sort(sorted);
+            mEventCount = sorted.length;
+            mTotalNanos = total;
+            mMedianNanos = percentile(sorted, 0.5F);
+            mP90Nanos = percentile(sorted, 0.9F);
+            mP99Nanos = percentile(sorted, 0.99F);
+            mMaxNanos = sorted.length == 0 ? 0L : sorted[sorted.length - 1];
+            long bytes = 0L;
+            long maxBytes = 0L;
+            for (long eventByte : eventBytes) {
+                bytes += eventByte;
+                maxBytes = Math.max(maxBytes, eventByte);
+            }
+            mAllocatedBytes = bytes;
+            mMaxAllocatedBytes = maxBytes;
+            mGestureCount = gestureCount;
+            mHandlerMessageCount = handlerMessageCount;
+            mUpdateRequestCount = updateRequestCount;
+            mUpdateIssuedCount = updateIssuedCount;
+            mUpdateSkippedCount = updateSkippedCount;
+        }
+
+        private static long percentile(long[] sorted, float fraction) {
+            if (sorted.length == 0) {
+                return 0L;
+            }
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        public int getEventCount() {
+            return mEventCount;
+        }
+
+        public long getAverageNanos() {
+            return mEventCount == 0 ? 0L : mTotalNanos / mEventCount;
+        }
+
+        public long getMedianNanos() {
+            return mMedianNanos;
+        }
+
+        public long getP90Nanos() {
+            return mP90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return mP99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        /**
+         * onTouch中分配的内存总字节数，不含回放时创建MotionEvent的开销
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        public long getAllocatedBytesPerEvent() {
+            return mEventCount == 0 ? 0L : mAllocatedBytes / mEventCount;
+        }
+
+        public long getAllocatedBytesPerGesture() {
+            return mGestureCount == 0 ? 0L : mAllocatedBytes / mGestureCount;
+        }
+
+        /**
+         * 单个事件的最大分配字节数
+         */
+        public long getMaxAllocatedBytes() {
+            return mMaxAllocatedBytes;
+        }
+
+        /**
+         * 手势识别发送的Handler消息数
+         */
+        public long getHandlerMessageCount() {
+            return mHandlerMessageCount;
+        }
+
+        public float getHandlerMessageCountPerGesture() {
+            return mGestureCount == 0 ? 0F : mHandlerMessageCount / (float) mGestureCount;
+        }
+
+        public long getUpdateRequestCount() {
+            return mUpdateRequestCount;
+        }
+
+        /**
+         * 实际执行updateViewLayout的次数
+         */
+        public long getUpdateIssuedCount() {
+            return mUpdateIssuedCount;
+        }
+
+        public long getUpdateSkippedCount() {
+            return mUpdateSkippedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "events=" + mEventCount +
+                    ", avg=" + getAverageNanos() + "ns" +
+                    ", p50=" + mMedianNanos + "ns" +
+                    ", p90=" + mP90Nanos + "ns" +
+                    ", p99=" + mP99Nanos + "ns" +
+                    ", max=" + mMaxNanos + "ns" +
+                    ", allocated=" + mAllocatedBytes + "B" +
+                    ", allocatedPerEvent=" + getAllocatedBytesPerEvent() + "B" +
+                    ", allocatedPerGesture=" + getAllocatedBytesPerGesture() + "B" +
+                    ", maxAllocated=" + mMaxAllocatedBytes + "B" +
+                    ", handlerMessages=" + mHandlerMessageCount +
+                    ", handlerMessagesPerGesture=" + getHandlerMessageCountPerGesture() +
+                    ", updateRequests=" + mUpdateRequestCount +
+                    ", updatesIssued=" + mUpdateIssuedCount +
+                    ", updatesSkipped=" + mUpdateSkippedCount +
+                    '}';
+        }
+    }
+}
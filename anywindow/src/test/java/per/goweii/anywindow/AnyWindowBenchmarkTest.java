@@ -0,0 +1,136 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class AnyWindowBenchmarkTest {
+
+    private static final int STEPS = 10;
+
+    private AnyWindow mWindow;
+    /**
+     * 每步都超过touch slop，第一个MOVE即开始拖拽
+     */
+    private float mStepPx;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        mStepPx = ViewConfiguration.get(activity).getScaledTouchSlop() + 2F;
+        mWindow = AnyWindow.create(activity)
+                .setView(new View(activity))
+                .setViewSize(100, 100);
+        mWindow.show();
+        // 默认位置贴在右边缘，移到中间避免拖拽时被限制在边界上
+        mWindow.setViewLocation(200, 100);
+        mWindow.update();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue(mWindow.getManager().isAttached(mWindow.getId()));
+    }
+
+    @After
+    public void tearDown() {
+        mWindow.dismiss();
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    @Test
+    public void immediateModeIssuesOneUpdatePerDragMove() {
+        mWindow.setUpdateImmediate(true);
+        AnyWindowBenchmark.Result result = AnyWindowBenchmark.run(mWindow, backAndForth(), 2, 5);
+        // 第一个MOVE只开始拖拽，之后每个MOVE都移动窗口
+        long movesPerGesture = STEPS * 2;
+        assertEquals(5 * movesPerGesture, result.getUpdateRequestCount());
+        assertEquals(5 * movesPerGesture, result.getUpdateIssuedCount());
+        assertEquals(0L, result.getUpdateSkippedCount());
+        assertEquals(0L, result.getHandlerMessageCount());
+    }
+
+    @Test
+    public void coalescedModeDefersUpdatesToNextFrame() {
+        AnyWindowBenchmark.Result result = AnyWindowBenchmark.run(mWindow, backAndForth(), 0, 1);
+        assertEquals(STEPS * 2, result.getUpdateRequestCount());
+        assertEquals(0L, result.getUpdateIssuedCount());
+        shadowOf(Looper.getMainLooper()).idleFor(16, TimeUnit.MILLISECONDS);
+        assertTrue(mWindow.getManager().getUpdateCount(mWindow.getId()) >= 1L);
+    }
+
+    @Test
+    public void reportsAllocationsPerGesture() {
+        AnyWindowBenchmark.Result result = AnyWindowBenchmark.run(mWindow, backAndForth(), 2, 5);
+        assertEquals(result.getAllocatedBytes() / 5, result.getAllocatedBytesPerGesture());
+        assertEquals(result.getAllocatedBytes() / result.getEventCount(), result.getAllocatedBytesPerEvent());
+    }
+
+    @Test
+    public void longPressListenerPostsOneMessagePerGesture() {
+        mWindow.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                return true;
+            }
+        });
+        AnyWindowBenchmark.Result result = AnyWindowBenchmark.run(mWindow, backAndForth(), 0, 3);
+        assertEquals(3L, result.getHandlerMessageCount());
+    }
+
+    @Test
+    public void replayedDragMovesWindowByTrackOffset() {
+        mWindow.setUpdateImmediate(true);
+        int startX = mWindow.getViewX();
+        int startY = mWindow.getViewY();
+        TouchTrack track = new TouchTrack();
+        track.add(MotionEvent.ACTION_DOWN, 0L, 200F, 200F);
+        track.add(MotionEvent.ACTION_MOVE, 8L, 200F - mStepPx, 200F);
+        track.add(MotionEvent.ACTION_MOVE, 16L, 200F - mStepPx - 50F, 230F);
+        track.add(MotionEvent.ACTION_UP, 16L, 200F - mStepPx - 50F, 230F);
+        AnyWindowBenchmark.run(mWindow, track, 0, 1);
+        // 位移从第一个超过touch slop的MOVE开始计算
+        assertEquals(startX - 50, mWindow.getViewX());
+        assertEquals(startY + 30, mWindow.getViewY());
+    }
+
+    /**
+     * 开始拖拽后向左STEPS步再拖回开始拖拽的位置，每次回放后窗口回到相同位置，便于多次回放
+     */
+    private TouchTrack backAndForth() {
+        TouchTrack track = new TouchTrack();
+        float x = 200F;
+        float y = 200F;
+        long time = 0L;
+        track.add(MotionEvent.ACTION_DOWN, time, x, y);
+        x -= mStepPx;
+        track.add(MotionEvent.ACTION_MOVE, time += 8L, x, y);
+        for (int i = 0; i < STEPS; i++) {
+            x -= mStepPx;
+            track.add(MotionEvent.ACTION_MOVE, time += 8L, x, y);
+        }
+        for (int i = 0; i < STEPS; i++) {
+            x += mStepPx;
+            track.add(MotionEvent.ACTION_MOVE, time += 8L, x, y);
+        }
+        track.add(MotionEvent.ACTION_UP, time, x, y);
+        return track;
+    }
+}
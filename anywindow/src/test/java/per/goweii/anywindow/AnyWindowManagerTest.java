@@ -0,0 +1,76 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class AnyWindowManagerTest {
+
+    private Activity mActivity;
+    private AnyWindowManager mManager;
+    private View mView;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        mManager = AnyWindowManager.newAttachToActivity(mActivity);
+        mView = new View(mActivity);
+    }
+
+    @After
+    public void tearDown() {
+        mManager.removeView(mView);
+        idle();
+    }
+
+    @Test
+    public void addViewAgainWithSameParamsKeepsWindow() {
+        WindowManager.LayoutParams params = WindowParams.createAppFloatWindow().get();
+        params.width = 100;
+        params.height = 100;
+        int id = mManager.addView(mView, params);
+        idle();
+        params.x = 50;
+        mManager.updateView(mView, params);
+        long updates = mManager.getUpdateCount(id);
+        assertEquals(id, mManager.addView(mView, params));
+        idle();
+        assertTrue(mManager.isAttached(id));
+        assertEquals(updates, mManager.getUpdateCount(id));
+    }
+
+    @Test
+    public void addViewWithNewParamsReplacesWindow() {
+        WindowManager.LayoutParams params = WindowParams.createAppFloatWindow().get();
+        int id = mManager.addView(mView, params);
+        idle();
+        WindowManager.LayoutParams other = WindowParams.createAppFloatWindow().get();
+        int newId = mManager.addView(mView, other);
+        idle();
+        assertNotEquals(id, newId);
+        assertTrue(mManager.isAttached(newId));
+        assertTrue(!mManager.isRegistered(id));
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
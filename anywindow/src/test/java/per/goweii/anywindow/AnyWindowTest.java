@@ -0,0 +1,437 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowDisplay;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class AnyWindowTest {
+
+    private static final int GESTURES = 10000;
+
+    private Activity mActivity;
+    private AnyWindow mWindow;
+
+    @Before
+    public void setUp() {
+        // 每个测试的Application和Display都不同，不能沿用上一个测试创建的共享实例
+        DisplayGeometry.clearInstance();
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        mWindow = AnyWindow.create(mActivity)
+                .setView(new View(mActivity))
+                .setViewSize(100, 100)
+                .setUpdateImmediate(true);
+    }
+
+    @After
+    public void tearDown() {
+        mWindow.dismiss();
+        idle();
+    }
+
+    @Test
+    public void managerMoveUpdatesWindowLocation() {
+        showAt(200, 100);
+        mWindow.getManager().move(mWindow.getId(), 150, 300);
+        assertLocation(150, 300);
+    }
+
+    @Test
+    public void postedLocationUpdatesWindowLocation() {
+        showAt(200, 100);
+        mWindow.getManager().postLocation(mWindow.getId(), 120, 250);
+        idle();
+        assertLocation(120, 250);
+    }
+
+    @Test
+    public void batchMoveUpdatesWindowLocation() {
+        showAt(200, 100);
+        mWindow.getManager().beginBatch().move(mWindow.getId(), 80, 220).apply();
+        idle();
+        assertLocation(80, 220);
+    }
+
+    @Test
+    public void dragAfterManagerMoveStartsFromNewLocation() {
+        showAt(200, 100);
+        mWindow.getManager().move(mWindow.getId(), 150, 300);
+        drag(30F, 20F);
+        assertLocation(180, 320);
+    }
+
+    @Test
+    public void translationModeMovesContentWhileDragging() {
+        mWindow.setMoveMode(AnyWindow.MoveMode.TRANSLATION);
+        showAt(200, 100);
+        long downTime = 0L;
+        float step = ViewConfiguration.get(mActivity).getScaledTouchSlop() + 2F;
+        touch(downTime, MotionEvent.ACTION_DOWN, 300F, 300F);
+        touch(downTime, MotionEvent.ACTION_MOVE, 300F + step, 300F);
+        // 拖拽中窗口展开为整个可移动区域
+        int expandedX = windowParams().x;
+        mWindow.getManager().postLocation(mWindow.getId(), 150, 200);
+        idle();
+        assertEquals(expandedX, windowParams().x);
+        assertEquals(150, mWindow.getViewX());
+        assertEquals(200, mWindow.getViewY());
+        touch(downTime, MotionEvent.ACTION_MOVE, 300F + step + 10F, 300F);
+        assertEquals(160, mWindow.getViewX());
+        assertEquals(200, mWindow.getViewY());
+    }
+
+    @Test
+    public void postedSizeKeepsExpandedHostWhileDragging() {
+        mWindow.setMoveMode(AnyWindow.MoveMode.TRANSLATION);
+        showAt(200, 100);
+        long downTime = 0L;
+        float step = ViewConfiguration.get(mActivity).getScaledTouchSlop() + 2F;
+        touch(downTime, MotionEvent.ACTION_DOWN, 300F, 300F);
+        touch(downTime, MotionEvent.ACTION_MOVE, 300F + step, 300F);
+        int expandedWidth = windowParams().width;
+        mWindow.getManager().postSize(mWindow.getId(), 150, 120);
+        idle();
+        assertEquals(expandedWidth, windowParams().width);
+        assertEquals(150, mWindow.getView().getLayoutParams().width);
+        assertEquals(120, mWindow.getView().getLayoutParams().height);
+    }
+
+    @Test
+    public void failedAddIsNotShowing() {
+        final WindowManager windowManager = mActivity.getWindowManager();
+        WindowManager failing = (WindowManager) Proxy.newProxyInstance(WindowManager.class.getClassLoader(),
+                new Class<?>[]{WindowManager.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("addView".equals(method.getName())) {
+                            throw new WindowManager.BadTokenException("permission denied");
+                        }
+                        return method.invoke(windowManager, args);
+                    }
+                });
+        AnyWindowManager manager = new AnyWindowManager(failing);
+        AnyWindow window = AnyWindow.create(mActivity, manager)
+                .setView(new View(mActivity))
+                .setViewSize(100, 100);
+        window.show();
+        assertFalse(window.isShowing());
+        assertEquals(AnyWindowManager.NO_ID, window.getId());
+        assertEquals(0, manager.getWindowCount());
+    }
+
+    @Test
+    public void fenceExcludesStatusBar() {
+        DisplayGeometry geometry = mWindow.getManager().getDisplayGeometry(mActivity);
+        geometry.invalidate();
+        assertTrue(geometry.getStatusBarHeight() > 0);
+        assertEquals(geometry.getStatusBarHeight(), geometry.getFenceRect().top);
+        showAt(200, 0);
+        assertEquals(geometry.getStatusBarHeight(), mWindow.getViewY());
+    }
+
+    @Test
+    public void rotationKeepsWindowOnSameEdge() {
+        DisplayGeometry geometry = mWindow.getManager().getDisplayGeometry(mActivity);
+        ShadowDisplay display = shadowOf(ShadowDisplay.getDefaultDisplay());
+        display.setWidth(480);
+        display.setHeight(800);
+        geometry.invalidate();
+        Rect fence = new Rect(geometry.getFenceRect());
+        showAt(fence.right - 100, fence.top + (fence.height() - 100) / 2);
+        display.setWidth(800);
+        display.setHeight(480);
+        geometry.invalidate();
+        idle();
+        Rect rotated = geometry.getFenceRect();
+        assertEquals(800, rotated.right);
+        assertLocation(rotated.right - 100, rotated.top + Math.round((rotated.height() - 100) / 2F));
+    }
+
+    @Test
+    public void windowsFromSeparateManagersAvoidEachOther() {
+        AnyWindow other = AnyWindow.create(mActivity)
+                .setView(new View(mActivity))
+                .setViewSize(100, 100);
+        other.show();
+        idle();
+        try {
+            assertTrue(other.getManager() != mWindow.getManager());
+            showAt(0, 400);
+            mWindow.getManager().setWindowBounds(mWindow.getId(), 0, 400, 100, 500);
+            assertEquals(500, other.getManager().resolveSnapY(other.getId(), 0, 420, 100, 100, 0, 1000));
+        } finally {
+            other.dismiss();
+        }
+    }
+
+    @Test
+    public void setViewLocationReportsBounds() {
+        showAt(0, 100);
+        mWindow.setViewLocation(0, 300);
+        mWindow.update();
+        AnyWindowManager manager = mWindow.getManager();
+        assertEquals(120, manager.resolveSnapY(AnyWindowManager.NO_ID, 0, 120, 100, 100, 0, 1000));
+        assertEquals(400, manager.resolveSnapY(AnyWindowManager.NO_ID, 0, 320, 100, 100, 0, 1000));
+    }
+
+    @Test
+    public void setViewWhileShowingKeepsWindowShown() {
+        mWindow.setEdgeDock(1000L, 20);
+        showAt(200, 300);
+        shadowOf(Looper.getMainLooper()).idleFor(1000, TimeUnit.MILLISECONDS);
+        assertTrue(mWindow.isDocked());
+        View view = new View(mActivity);
+        mWindow.setView(view);
+        idle();
+        assertFalse(mWindow.isDocked());
+        assertTrue(mWindow.isShowing());
+        assertTrue(mWindow.getManager().isAttached(mWindow.getId()));
+        assertTrue(view.isAttachedToWindow());
+        assertLocation(200, 300);
+    }
+
+    @Test
+    public void setViewInTranslationModeSwapsContent() {
+        mWindow.setMoveMode(AnyWindow.MoveMode.TRANSLATION);
+        showAt(200, 300);
+        int id = mWindow.getId();
+        View view = new View(mActivity);
+        mWindow.setView(view);
+        idle();
+        assertEquals(id, mWindow.getId());
+        assertTrue(view.isAttachedToWindow());
+        assertLocation(200, 300);
+    }
+
+    @Test
+    public void managerUpdatesWaitWhileHostStopped() {
+        showAt(200, 100);
+        long updates = mWindow.getManager().getUpdateCount(mWindow.getId());
+        mWindow.onHostStopped();
+        mWindow.getManager().move(mWindow.getId(), 150, 300);
+        mWindow.getManager().postLocation(mWindow.getId(), 155, 305);
+        idle();
+        mWindow.getManager().beginBatch().move(mWindow.getId(), 160, 310).apply();
+        idle();
+        assertEquals(160, mWindow.getViewX());
+        assertEquals(updates, mWindow.getManager().getUpdateCount(mWindow.getId()));
+        mWindow.onHostStarted();
+        assertLocation(160, 310);
+        assertEquals(updates + 1, mWindow.getManager().getUpdateCount(mWindow.getId()));
+    }
+
+    @Test
+    public void dockWaitsWhileHostStopped() {
+        mWindow.setEdgeDock(1000L, 20);
+        showAt(200, 300);
+        mWindow.onHostStopped();
+        shadowOf(Looper.getMainLooper()).idleFor(2000, TimeUnit.MILLISECONDS);
+        assertFalse(mWindow.isDocked());
+        mWindow.onHostStarted();
+        shadowOf(Looper.getMainLooper()).idleFor(1000, TimeUnit.MILLISECONDS);
+        assertTrue(mWindow.isDocked());
+    }
+
+    @Test
+    public void touchDuringFlingDoesNotDock() {
+        mWindow.setEdgeDock(1000L, 20);
+        showAt(200, 300);
+        drag(-60F, 0F);
+        long downTime = 0L;
+        touch(downTime, MotionEvent.ACTION_UP, 240F, 300F);
+        touch(100L, MotionEvent.ACTION_DOWN, 240F, 300F);
+        shadowOf(Looper.getMainLooper()).idleFor(2000, TimeUnit.MILLISECONDS);
+        assertFalse(mWindow.isDocked());
+    }
+
+    @Test
+    public void retainedBytesCountViewTree() {
+        AnyWindow window = AnyWindow.create(mActivity).setView(android.R.layout.simple_list_item_1);
+        window.getView();
+        assertTrue(window.getRetainedBytes() >= WindowMemoryPolicy.VIEW_BYTES);
+        assertTrue(window.releaseResources());
+        assertEquals(0L, window.getRetainedBytes());
+    }
+
+    @Test
+    public void releaseFromOtherThreadIsOnlyScheduled() throws InterruptedException {
+        final AnyWindow window = AnyWindow.create(mActivity).setView(android.R.layout.simple_list_item_1);
+        window.getView();
+        final boolean[] released = new boolean[]{true};
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                released[0] = window.releaseResources();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertFalse(released[0]);
+        assertTrue(window.getRetainedBytes() > 0L);
+        idle();
+        assertEquals(0L, window.getRetainedBytes());
+    }
+
+    @Test
+    public void callsFromOtherThreadRunOnWindowThread() throws InterruptedException {
+        showAt(200, 100);
+        final AnyWindowManager.Batch batch = mWindow.getManager().beginBatch().move(mWindow.getId(), 60, 260);
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mWindow.setViewSize(120, 120);
+                    mWindow.setViewLocation(90, 240);
+                    mWindow.update();
+                    batch.apply();
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(error[0]);
+        idle();
+        assertEquals(120, windowParams().width);
+        assertLocation(60, 260);
+    }
+
+    @Test
+    public void repeatedDragAndFlingDoNotAllocate() {
+        showAt(100, 200);
+        mWindow.setUpdateImmediate(false);
+        float step = ViewConfiguration.get(mActivity).getScaledTouchSlop() + 2F;
+        MotionEvent[] gesture = new MotionEvent[12];
+        gesture[0] = MotionEvent.obtain(0L, 0L, MotionEvent.ACTION_DOWN, 300F, 300F, 0);
+        for (int i = 1; i <= 10; i++) {
+            // 来回拖拽，每次回放后窗口回到相同位置
+            float x = i % 2 == 1 ? 300F + step : 300F;
+            gesture[i] = MotionEvent.obtain(0L, i * 8L, MotionEvent.ACTION_MOVE, x, 300F + i * 3F, 0);
+        }
+        gesture[11] = MotionEvent.obtain(0L, 88L, MotionEvent.ACTION_UP, 300F, 330F, 0);
+        // Robolectric的VelocityTracker由Java实现，会装箱和分配数组，设备上由native实现。
+        // 将同样的事件送入单独的VelocityTracker，扣除这部分分配
+        VelocityTracker tracker = VelocityTracker.obtain();
+        try {
+            for (int i = 0; i < GESTURES; i++) {
+                runGesture(gesture);
+                trackVelocity(tracker, gesture);
+            }
+            long probe = allocatedBytes();
+            long overhead = allocatedBytes() - probe;
+            long start = allocatedBytes();
+            for (int i = 0; i < GESTURES; i++) {
+                trackVelocity(tracker, gesture);
+            }
+            long trackerBytes = allocatedBytes() - start - overhead;
+            start = allocatedBytes();
+            // 每次按下都会取消上一次松手开始的吸附动画
+            for (int i = 0; i < GESTURES; i++) {
+                runGesture(gesture);
+            }
+            long windowBytes = allocatedBytes() - start - overhead;
+            assertEquals(0L, Math.max(0L, windowBytes - trackerBytes) / GESTURES);
+        } finally {
+            tracker.recycle();
+            for (MotionEvent event : gesture) {
+                event.recycle();
+            }
+        }
+    }
+
+    private void runGesture(MotionEvent[] gesture) {
+        for (MotionEvent event : gesture) {
+            mWindow.onTouch(mWindow.getView(), event);
+        }
+    }
+
+    private static void trackVelocity(VelocityTracker tracker, MotionEvent[] gesture) {
+        tracker.clear();
+        for (MotionEvent event : gesture) {
+            tracker.addMovement(event);
+        }
+        tracker.computeCurrentVelocity(1000, 1000F);
+        tracker.getXVelocity();
+        tracker.getYVelocity();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void showAt(int x, int y) {
+        mWindow.show();
+        mWindow.setViewLocation(x, y);
+        mWindow.update();
+        idle();
+        assertTrue(mWindow.getManager().isAttached(mWindow.getId()));
+    }
+
+    private void assertLocation(int x, int y) {
+        assertEquals(x, mWindow.getViewX());
+        assertEquals(y, mWindow.getViewY());
+        assertEquals(x, windowParams().x);
+        assertEquals(y, windowParams().y);
+    }
+
+    /**
+     * 超过touch slop开始拖拽后再移动(dx, dy)，不松手
+     */
+    private void drag(float dx, float dy) {
+        float step = ViewConfiguration.get(mActivity).getScaledTouchSlop() + 2F;
+        long downTime = 0L;
+        touch(downTime, MotionEvent.ACTION_DOWN, 300F, 300F);
+        touch(downTime, MotionEvent.ACTION_MOVE, 300F + step, 300F);
+        touch(downTime, MotionEvent.ACTION_MOVE, 300F + step + dx, 300F + dy);
+    }
+
+    /**
+     * 实际提交给WindowManager的参数
+     */
+    private WindowManager.LayoutParams windowParams() {
+        return (WindowManager.LayoutParams) mWindow.getView().getRootView().getLayoutParams();
+    }
+
+    private void touch(long downTime, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, downTime, action, x, y, 0);
+        mWindow.onTouch(mWindow.getView(), event);
+        event.recycle();
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
@@ -0,0 +1,124 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class DragGestureDetectorTest {
+
+    private static final int STEPS = 10;
+    private static final int GESTURES = 10000;
+
+    private DragGestureDetector mDetector;
+    private MotionEvent[] mGesture;
+    private int mDragCount = 0;
+    private int mReleaseCount = 0;
+    private int mTapCount = 0;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        mDetector = new DragGestureDetector(activity, new DragGestureDetector.Callback() {
+            @Override
+            public void onDown(@NonNull MotionEvent e) {
+            }
+
+            @Override
+            public void onDrag(@NonNull MotionEvent e) {
+                mDragCount++;
+            }
+
+            @Override
+            public void onRelease(@NonNull MotionEvent e) {
+                mReleaseCount++;
+            }
+
+            @Override
+            public void onTap(@NonNull MotionEvent e) {
+                mTapCount++;
+            }
+
+            @Override
+            public void onLongPress() {
+            }
+        });
+        float step = ViewConfiguration.get(activity).getScaledTouchSlop() + 2F;
+        mGesture = new MotionEvent[STEPS + 2];
+        mGesture[0] = MotionEvent.obtain(0L, 0L, MotionEvent.ACTION_DOWN, 100F, 100F, 0);
+        for (int i = 1; i <= STEPS; i++) {
+            mGesture[i] = MotionEvent.obtain(0L, i * 8L, MotionEvent.ACTION_MOVE, 100F + i * step, 100F, 0);
+        }
+        mGesture[STEPS + 1] = MotionEvent.obtain(0L, STEPS * 8L, MotionEvent.ACTION_UP, 100F + STEPS * step, 100F, 0);
+    }
+
+    @After
+    public void tearDown() {
+        for (MotionEvent event : mGesture) {
+            event.recycle();
+        }
+    }
+
+    @Test
+    public void dragIsRecognizedPastTouchSlop() {
+        runGesture();
+        assertEquals(STEPS, mDragCount);
+        assertEquals(1, mReleaseCount);
+        assertEquals(0, mTapCount);
+    }
+
+    @Test
+    public void dragWithoutLongPressPostsAndAllocatesNothing() {
+        // 预热，排除类加载和JIT编译产生的分配
+        for (int i = 0; i < GESTURES; i++) {
+            runGesture();
+        }
+        long probe = allocatedBytes();
+        long overhead = allocatedBytes() - probe;
+        long start = allocatedBytes();
+        for (int i = 0; i < GESTURES; i++) {
+            runGesture();
+        }
+        long allocated = allocatedBytes() - start - overhead;
+        // Robolectric和JIT偶尔有少量与手势数无关的分配，按每个手势的平均值判断
+        assertEquals(0L, Math.max(0L, allocated) / GESTURES);
+        assertEquals(0L, mDetector.getPostedMessageCount());
+    }
+
+    @Test
+    public void longPressPostsOneMessagePerGesture() {
+        mDetector.setLongPressEnabled(true);
+        for (int i = 0; i < 3; i++) {
+            runGesture();
+        }
+        assertEquals(3L, mDetector.getPostedMessageCount());
+    }
+
+    private void runGesture() {
+        for (MotionEvent event : mGesture) {
+            mDetector.onTouchEvent(event);
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,112 @@
+package per.goweii.anywindow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrictionSnapEngineTest {
+
+    private static final long FRAME_MILLIS = 16L;
+    private static final long START_MILLIS = 1000L;
+    private static final float DISTANCE = 880F;
+
+    @Test
+    public void settlesOnTargetWithoutOvershoot() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        engine.start(100F, 200F, 0F, 0F, 100F + DISTANCE, 300F, START_MILLIS);
+        float lastX = 100F;
+        float lastY = 200F;
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            assertTrue(engine.getCurrX() >= lastX);
+            assertTrue(engine.getCurrX() <= 100F + DISTANCE);
+            assertTrue(engine.getCurrY() >= lastY);
+            assertTrue(engine.getCurrY() <= 300F);
+            lastX = engine.getCurrX();
+            lastY = engine.getCurrY();
+        }
+        assertTrue(engine.isFinished());
+        assertEquals(100F + DISTANCE, engine.getCurrX(), 0F);
+        assertEquals(300F, engine.getCurrY(), 0F);
+    }
+
+    @Test
+    public void withoutVelocityUsesMinimumFriction() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        engine.start(0F, 0F, 0F, 0F, DISTANCE, 0F, START_MILLIS);
+        assertSettlesIn(expectedMillis(FrictionSnapEngine.DEFAULT_FRICTION), engine);
+    }
+
+    @Test
+    public void opposingVelocityUsesMinimumFriction() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        engine.start(0F, 0F, -5000F, 0F, DISTANCE, 0F, START_MILLIS);
+        assertSettlesIn(expectedMillis(FrictionSnapEngine.DEFAULT_FRICTION), engine);
+    }
+
+    @Test
+    public void releaseVelocitySetsDecay() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        // 初速度为 k * d，k取最小和最大之间的值
+        float decay = 20F;
+        engine.start(0F, 0F, decay * DISTANCE, 0F, DISTANCE, 0F, START_MILLIS);
+        assertSettlesIn(expectedMillis(decay), engine);
+    }
+
+    @Test
+    public void fastFlickIsLimitedByMaximumFriction() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        engine.start(0F, 0F, 100000F, 0F, DISTANCE, 0F, START_MILLIS);
+        assertSettlesIn(expectedMillis(FrictionSnapEngine.DEFAULT_MAX_FRICTION), engine);
+    }
+
+    @Test
+    public void firstFrameMovesAtReleaseVelocity() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        float velocity = 20F * DISTANCE;
+        engine.start(0F, 0F, velocity, 0F, DISTANCE, 0F, START_MILLIS);
+        assertTrue(engine.step(START_MILLIS + 1L));
+        // 1ms内速度变化很小，位移接近 v * t
+        assertEquals(velocity / 1000F, engine.getCurrX(), velocity / 1000F * 0.05F);
+    }
+
+    @Test
+    public void abortKeepsCurrentPosition() {
+        FrictionSnapEngine engine = new FrictionSnapEngine();
+        engine.start(0F, 0F, 0F, 0F, DISTANCE, 0F, START_MILLIS);
+        assertTrue(engine.step(START_MILLIS + 50L));
+        float x = engine.getCurrX();
+        engine.abort();
+        assertTrue(engine.isFinished());
+        assertFalse(engine.step(START_MILLIS + 100L));
+        assertEquals(x, engine.getCurrX(), 0F);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaxFrictionBelowFriction() {
+        new FrictionSnapEngine(10F, 5F);
+    }
+
+    /**
+     * 剩余距离 d * e^(-kt) 小于0.5像素时停止，即 t = ln(2d) / k
+     */
+    private static long expectedMillis(float decay) {
+        return (long) Math.ceil(Math.log(DISTANCE * 2F) / decay * 1000F);
+    }
+
+    /**
+     * 按帧推进，停止的帧应是第一个不早于理论时长的帧
+     */
+    private static void assertSettlesIn(long expectedMillis, FrictionSnapEngine engine) {
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            assertTrue("not settled in " + expectedMillis + "ms", time - START_MILLIS < expectedMillis + FRAME_MILLIS);
+        }
+        long elapsed = time - START_MILLIS;
+        assertTrue("settled after " + elapsed + "ms, expected " + expectedMillis + "ms",
+                elapsed >= expectedMillis - FRAME_MILLIS && elapsed < expectedMillis + FRAME_MILLIS);
+        assertEquals(DISTANCE, engine.getCurrX(), 0F);
+    }
+}
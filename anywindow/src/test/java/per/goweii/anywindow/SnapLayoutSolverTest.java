@@ -0,0 +1,74 @@
+package per.goweii.anywindow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SnapLayoutSolverTest {
+
+    private static final int SIZE = 100;
+    private static final int MIN_Y = 0;
+    private static final int MAX_Y = 1000 - SIZE;
+
+    @Test
+    public void freeTargetIsKept() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setRect(1, 0, 0, SIZE, SIZE);
+        assertEquals(500, solver.resolveY(2, 0, 500, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void stacksBelowWindowAtSameEdge() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setRect(1, 0, 400, SIZE, 400 + SIZE);
+        // 目标偏下，放到已有悬浮窗的下方
+        assertEquals(500, solver.resolveY(2, 0, 420, SIZE, SIZE, MIN_Y, MAX_Y));
+        solver.setRect(2, 0, 500, SIZE, 500 + SIZE);
+        // 上下都被占用时取离期望位置最近的空位
+        assertEquals(300, solver.resolveY(3, 0, 450, SIZE, SIZE, MIN_Y, MAX_Y));
+        assertEquals(600, solver.resolveY(3, 0, 560, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void keepsSpacingBetweenWindows() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setSpacing(16);
+        solver.setRect(1, 0, 400, SIZE, 400 + SIZE);
+        assertEquals(516, solver.resolveY(2, 0, 450, SIZE, SIZE, MIN_Y, MAX_Y));
+        assertEquals(284, solver.resolveY(2, 0, 340, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void returnsClampedTargetWhenNoSlotIsFree() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        for (int i = 0; i < 10; i++) {
+            solver.setRect(i + 1, 0, i * SIZE, SIZE, (i + 1) * SIZE);
+        }
+        assertEquals(450, solver.resolveY(100, 0, 450, SIZE, SIZE, MIN_Y, MAX_Y));
+        assertEquals(MAX_Y, solver.resolveY(100, 0, 2000, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void ignoresOwnRect() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setRect(1, 0, 400, SIZE, 400 + SIZE);
+        assertEquals(420, solver.resolveY(1, 0, 420, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void ignoresWindowsAtOtherEdge() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setRect(1, 900, 400, 900 + SIZE, 400 + SIZE);
+        assertEquals(420, solver.resolveY(2, 0, 420, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+
+    @Test
+    public void removedRectNoLongerBlocks() {
+        SnapLayoutSolver solver = new SnapLayoutSolver();
+        solver.setRect(1, 0, 400, SIZE, 400 + SIZE);
+        solver.setRect(2, 0, 0, SIZE, SIZE);
+        solver.removeRect(1);
+        assertEquals(1, solver.size());
+        assertEquals(420, solver.resolveY(3, 0, 420, SIZE, SIZE, MIN_Y, MAX_Y));
+    }
+}
@@ -0,0 +1,93 @@
+package per.goweii.anywindow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpringSnapEngineTest {
+
+    private static final long FRAME_MILLIS = 16L;
+    private static final long START_MILLIS = 1000L;
+
+    @Test
+    public void defaultSettlesOnTargetWithoutOvershoot() {
+        SpringSnapEngine engine = new SpringSnapEngine();
+        engine.start(100F, 200F, 0F, 0F, 980F, 200F, START_MILLIS);
+        float lastX = 100F;
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            assertTrue(engine.getCurrX() >= lastX);
+            assertTrue(engine.getCurrX() <= 980F);
+            lastX = engine.getCurrX();
+            assertTrue("not settled in 2s", time - START_MILLIS < 2000L);
+        }
+        assertTrue(engine.isFinished());
+        assertEquals(980F, engine.getCurrX(), 0F);
+        assertEquals(200F, engine.getCurrY(), 0F);
+    }
+
+    @Test
+    public void fastFlickStopsAtTarget() {
+        SpringSnapEngine engine = new SpringSnapEngine();
+        engine.start(100F, 500F, 20000F, -8000F, 980F, 300F, START_MILLIS);
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            assertTrue(engine.getCurrX() <= 980F);
+            assertTrue(engine.getCurrY() >= 300F);
+        }
+        assertEquals(980F, engine.getCurrX(), 0F);
+        assertEquals(300F, engine.getCurrY(), 0F);
+    }
+
+    @Test
+    public void flickTowardLeftEdgeStopsAtTarget() {
+        SpringSnapEngine engine = new SpringSnapEngine();
+        engine.start(600F, 500F, -20000F, 0F, 0F, 500F, START_MILLIS);
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            assertTrue(engine.getCurrX() >= 0F);
+        }
+        assertEquals(0F, engine.getCurrX(), 0F);
+    }
+
+    @Test
+    public void underdampedSpringOvershootsWhenClampingDisabled() {
+        SpringSnapEngine engine = new SpringSnapEngine(400F, 0.3F).setOvershootClamping(false);
+        engine.start(100F, 0F, 0F, 0F, 980F, 0F, START_MILLIS);
+        float maxX = 0F;
+        long time = START_MILLIS;
+        while (engine.step(time += FRAME_MILLIS)) {
+            maxX = Math.max(maxX, engine.getCurrX());
+        }
+        assertTrue(maxX > 980F);
+        assertEquals(980F, engine.getCurrX(), 0F);
+    }
+
+    @Test
+    public void sameTimesGiveSamePositions() {
+        SpringSnapEngine first = new SpringSnapEngine();
+        SpringSnapEngine second = new SpringSnapEngine();
+        first.start(0F, 0F, 1500F, 300F, 500F, 100F, START_MILLIS);
+        second.start(0F, 0F, 1500F, 300F, 500F, 100F, 0L);
+        // 两次动画的开始时间不同，只要经过的时间相同结果就相同
+        for (long elapsed = FRAME_MILLIS; elapsed < 500L; elapsed += FRAME_MILLIS) {
+            assertEquals(first.step(START_MILLIS + elapsed), second.step(elapsed));
+            assertEquals(first.getCurrX(), second.getCurrX(), 0F);
+            assertEquals(first.getCurrY(), second.getCurrY(), 0F);
+        }
+    }
+
+    @Test
+    public void abortKeepsCurrentPosition() {
+        SpringSnapEngine engine = new SpringSnapEngine();
+        engine.start(0F, 0F, 0F, 0F, 500F, 0F, START_MILLIS);
+        assertTrue(engine.step(START_MILLIS + 50L));
+        float x = engine.getCurrX();
+        engine.abort();
+        assertTrue(engine.isFinished());
+        assertFalse(engine.step(START_MILLIS + 100L));
+        assertEquals(x, engine.getCurrX(), 0F);
+    }
+}
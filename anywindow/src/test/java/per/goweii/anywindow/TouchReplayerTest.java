@@ -0,0 +1,77 @@
+package per.goweii.anywindow;
+
+import android.app.Activity;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class TouchReplayerTest {
+
+    private HandlerThread mThread;
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mThread = new HandlerThread("window");
+        mThread.start();
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @After
+    public void tearDown() {
+        mThread.quit();
+    }
+
+    @Test
+    public void replaysOnWindowThread() throws InterruptedException {
+        final AnyWindow window = AnyWindow.create(mActivity, mThread.getLooper())
+                .setView(new View(mActivity))
+                .setViewSize(100, 100);
+        float step = ViewConfiguration.get(mActivity).getScaledTouchSlop() + 2F;
+        TouchTrack track = new TouchTrack();
+        track.add(MotionEvent.ACTION_DOWN, 0L, 200F, 200F);
+        track.add(MotionEvent.ACTION_MOVE, 8L, 200F + step, 200F);
+        track.add(MotionEvent.ACTION_MOVE, 16L, 200F + step + 50F, 230F);
+        track.add(MotionEvent.ACTION_UP, 24L, 200F + step + 50F, 230F);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] onWindowThread = new boolean[1];
+        final TouchReplayer.Report[] report = new TouchReplayer.Report[1];
+        new TouchReplayer(window, track)
+                .setSpeed(0F)
+                .setOnReplayListener(new TouchReplayer.OnReplayListener() {
+                    @Override
+                    public void onReplayFinished(@NonNull TouchReplayer.Report r) {
+                        onWindowThread[0] = window.isWindowThread();
+                        report[0] = r;
+                        latch.countDown();
+                    }
+                })
+                .start();
+        // 松手后的吸附动画只能在悬浮窗所在线程启动，在调用线程送入事件时会抛出异常
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(onWindowThread[0]);
+        assertEquals(4, report[0].getEventCount());
+        assertEquals(report[0].getWindowX(1) + 50, report[0].getWindowX(2));
+        assertEquals(report[0].getWindowY(1) + 30, report[0].getWindowY(2));
+    }
+}
@@ -0,0 +1,99 @@
+package per.goweii.anywindow;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchSampleBufferTest {
+
+    @Test
+    public void keepsNewestSamplesWhenFull() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i, -i, i * 10L);
+        }
+        assertEquals(buffer.capacity(), buffer.size());
+        for (int age = 0; age < buffer.size(); age++) {
+            assertEquals(9 - age, buffer.getX(age), 0F);
+            assertEquals(age - 9, buffer.getY(age), 0F);
+            assertEquals((9 - age) * 10L, buffer.getTime(age));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsAgeBeyondSize() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(4);
+        buffer.add(0F, 0F, 0L);
+        buffer.getX(1);
+    }
+
+    @Test
+    public void computesVelocityOfUniformMotion() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(32);
+        // 每8ms移动(4,-2)像素，即(500,-250)像素/秒
+        for (int i = 0; i < 20; i++) {
+            buffer.add(100F + i * 4F, 300F - i * 2F, 1000L + i * 8L);
+        }
+        assertTrue(buffer.computeVelocity(100L));
+        assertEquals(500F, buffer.getVelocityX(), 0.01F);
+        assertEquals(-250F, buffer.getVelocityY(), 0.01F);
+        assertEquals(-26.565F, buffer.getDirectionDegrees(50L), 0.01F);
+    }
+
+    @Test
+    public void ignoresSamplesOutsideWindow() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(8);
+        buffer.add(0F, 0F, 0L);
+        buffer.add(1000F, 0F, 500L);
+        buffer.add(1010F, 0F, 510L);
+        assertTrue(buffer.computeVelocity(20L));
+        assertEquals(1000F, buffer.getVelocityX(), 0.01F);
+    }
+
+    @Test
+    public void reportsNoVelocityForSingleSample() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(8);
+        buffer.add(10F, 10F, 0L);
+        assertFalse(buffer.computeVelocity(100L));
+        assertEquals(0F, buffer.getVelocityX(), 0F);
+        assertEquals(0F, buffer.getDirectionDegrees(50L), 0F);
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(32);
+        // 预热，让JIT完成编译
+        for (int i = 0; i < 20000; i++) {
+            runGesture(buffer, i);
+        }
+        // 读取计数本身可能产生的分配
+        long probe = allocatedBytes();
+        long overhead = allocatedBytes() - probe;
+        long start = allocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            runGesture(buffer, i);
+        }
+        long allocated = allocatedBytes() - start - overhead;
+        assertEquals(0L, Math.max(0L, allocated));
+    }
+
+    private static void runGesture(TouchSampleBuffer buffer, int seed) {
+        buffer.clear();
+        for (int i = 0; i < buffer.capacity() * 2; i++) {
+            buffer.add(seed + i * 3F, seed - i * 2F, i * 8L);
+            buffer.computeVelocity(40L);
+        }
+        buffer.computeVelocity(100L);
+        buffer.getDirectionDegrees(50L);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
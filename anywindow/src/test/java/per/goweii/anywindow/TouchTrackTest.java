@@ -0,0 +1,92 @@
+package per.goweii.anywindow;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TouchTrackTest {
+
+    @Test
+    public void batchedSamplesSurviveRoundTrip() throws IOException {
+        TouchTrack track = batchedTrack();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        track.writeTo(out);
+        TouchTrack read = TouchTrack.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(track.size(), read.size());
+        for (int i = 0; i < track.size(); i++) {
+            assertEquals(track.getAction(i), read.getAction(i));
+            assertEquals(track.getTime(i), read.getTime(i));
+            assertEquals(track.getX(i), read.getX(i), 0F);
+            assertEquals(track.getHistorySize(i), read.getHistorySize(i));
+            for (int h = 0; h < track.getHistorySize(i); h++) {
+                assertEquals(track.getHistoricalTime(i, h), read.getHistoricalTime(i, h));
+                assertEquals(track.getHistoricalX(i, h), read.getHistoricalX(i, h), 0F);
+                assertEquals(track.getHistoricalY(i, h), read.getHistoricalY(i, h), 0F);
+            }
+        }
+    }
+
+    @Test
+    public void readsSingleSampleVersion() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x4154524B);
+        data.writeByte(1);
+        data.writeInt(2);
+        data.writeByte(MotionEvent.ACTION_DOWN);
+        data.writeByte(0);
+        data.writeFloat(10F);
+        data.writeFloat(20F);
+        data.writeByte(MotionEvent.ACTION_UP);
+        data.writeByte(16);
+        data.writeFloat(30F);
+        data.writeFloat(40F);
+        data.flush();
+        TouchTrack track = TouchTrack.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, track.size());
+        assertEquals(0, track.getHistorySize(1));
+        assertEquals(16L, track.getTime(1));
+        assertEquals(40F, track.getY(1), 0F);
+    }
+
+    @Test
+    public void obtainedEventKeepsBatchedHistory() {
+        TouchTrack track = batchedTrack();
+        MotionEvent event = track.obtainEvent(1, 1000L);
+        try {
+            assertEquals(MotionEvent.ACTION_MOVE, event.getActionMasked());
+            assertEquals(2, event.getHistorySize());
+            assertEquals(1004L, event.getHistoricalEventTime(0));
+            assertEquals(12F, event.getHistoricalX(0), 0F);
+            assertEquals(1008L, event.getHistoricalEventTime(1));
+            assertEquals(14F, event.getHistoricalX(1), 0F);
+            assertEquals(1012L, event.getEventTime());
+            assertEquals(16F, event.getX(), 0F);
+            assertEquals(26F, event.getY(), 0F);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    private static TouchTrack batchedTrack() {
+        TouchTrack track = new TouchTrack();
+        track.add(MotionEvent.ACTION_DOWN, 0L, 10F, 20F);
+        track.addHistorical(4L, 12F, 22F);
+        track.addHistorical(8L, 14F, 24F);
+        track.add(MotionEvent.ACTION_MOVE, 12L, 16F, 26F);
+        track.add(MotionEvent.ACTION_UP, 12L, 16F, 26F);
+        return track;
+    }
+}
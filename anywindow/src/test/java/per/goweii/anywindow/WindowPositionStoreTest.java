@@ -0,0 +1,80 @@
+package per.goweii.anywindow;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WindowPositionStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(RuntimeEnvironment.getApplication().getFilesDir(), "positions_test");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        out.writeInt(0x4157504F);
+        out.writeInt(1);
+        out.writeInt(2);
+        out.writeInt(1);
+        out.writeInt(10);
+        out.writeInt(20);
+        out.writeInt(30);
+        out.writeInt(40);
+        out.writeInt(2);
+        out.writeInt(50);
+        out.writeInt(60);
+        out.writeInt(70);
+        out.writeInt(80);
+        out.close();
+    }
+
+    @Test
+    public void getDoesNotWaitForLoad() throws InterruptedException {
+        WindowPositionStore store = new WindowPositionStore(mFile);
+        int[] out = new int[4];
+        assertFalse(store.get(1, out));
+        awaitLoad(store);
+        assertTrue(store.isLoaded());
+        assertTrue(store.get(1, out));
+        assertArrayEquals(new int[]{10, 20, 30, 40}, out);
+    }
+
+    @Test
+    public void changesBeforeLoadOverrideFile() throws InterruptedException {
+        WindowPositionStore store = new WindowPositionStore(mFile);
+        store.put(1, 11, 21, 31, 41);
+        store.remove(2);
+        awaitLoad(store);
+        int[] out = new int[4];
+        assertTrue(store.get(1, out));
+        assertArrayEquals(new int[]{11, 21, 31, 41}, out);
+        assertFalse(store.get(2, out));
+    }
+
+    private static void awaitLoad(WindowPositionStore store) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        store.postAfterLoad(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -1,14 +1,24 @@
 package per.goweii.android.anywindow;
 
+import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
 
 import per.goweii.anywindow.AnyWindow;
+import per.goweii.anywindow.AnyWindowPool;
+import per.goweii.anywindow.TouchReplayer;
+import per.goweii.anywindow.TouchTrack;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String KEY_ICON = "icon";
+
+    private final AnyWindowPool mWindowPool = new AnyWindowPool(4, 60 * 1000L);
+    private AnyWindow mIconWindow = null;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -17,11 +27,50 @@ public class MainActivity extends AppCompatActivity {
         findViewById(R.id.btn_show_float).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                AnyWindow.create(MainActivity.this)
-                        .setView(R.layout.anywindow_icon)
-                        .setViewSize(WindowManager.LayoutParams.WRAP_CONTENT, WindowManager.LayoutParams.WRAP_CONTENT)
-                        .show();
+                if (mIconWindow != null) {
+                    mWindowPool.release(KEY_ICON, mIconWindow);
+                    mIconWindow = null;
+                    return;
+                }
+                mIconWindow = mWindowPool.acquire(KEY_ICON);
+                if (mIconWindow == null) {
+                    mIconWindow = AnyWindow.create(MainActivity.this)
+                            .setView(R.layout.anywindow_icon)
+                            .setViewSize(WindowManager.LayoutParams.WRAP_CONTENT, WindowManager.LayoutParams.WRAP_CONTENT);
+                }
+                mIconWindow.show();
+            }
+        });
+
+        findViewById(R.id.btn_benchmark).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (mIconWindow == null) {
+                    return;
+                }
+                int[] location = new int[2];
+                v.getLocationOnScreen(location);
+                TouchTrack track = TouchTrack.drag(location[0], location[1],
+                        location[0] + v.getWidth(), location[1] + v.getHeight() * 4, 60, 500L);
+                new TouchReplayer(mIconWindow, track)
+                        .setOnReplayListener(new TouchReplayer.OnReplayListener() {
+                            @Override
+                            public void onReplayFinished(@NonNull TouchReplayer.Report report) {
+                                Log.d("TouchReplayer", report.toString());
+                            }
+                        })
+                        .start();
             }
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        if (mIconWindow != null) {
+            mIconWindow.dismiss();
+            mIconWindow = null;
+        }
+        mWindowPool.clear();
+        super.onDestroy();
+    }
 }